@@ -0,0 +1,129 @@
+package org.sprat.ecosystem.tests
+
+import com.google.inject.Inject
+import org.eclipse.xtext.junit4.InjectWith
+import org.eclipse.xtext.junit4.XtextRunner
+import org.eclipse.xtext.junit4.formatter.FormatterTestHelper
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.sprat.ecosystem.EcosystemInjectorProvider
+
+@RunWith(typeof(XtextRunner))
+@InjectWith(typeof(EcosystemInjectorProvider))
+class EcosystemFormatterTest {
+
+	// 37 characters, long enough that any tab width from 1 to 8 wraps at the same operators
+	static val TERM = '0.' + '11111111111111111111111111111111111'
+
+	// far above the expected time, so that only a superlinear formatter fails, not a loaded machine
+	static val N_SPECIES_LARGE_MODEL = 500
+	static val MAX_MILLIS_LARGE_MODEL = 60000
+
+	@Inject extension FormatterTestHelper
+
+	@Test
+	def void testEntitiesAndExpressions() {
+		assertFormatted[
+			allowUnformattedWhitespace = true
+			toBeFormatted = '''
+Species Sprat {ScientificName : "Sprattus sprattus"
+InitialDistribution : function @ ( 1.0-r )*sqrt( x )
+}
+'''
+			expectation = '''
+Species Sprat {
+	ScientificName: "Sprattus sprattus"
+	InitialDistribution: function @ (1.0 - r) * sqrt(x)
+}
+
+'''
+		]
+	}
+
+	@Test
+	def void testRecords() {
+		assertFormatted[
+			allowUnformattedWhitespace = true
+			toBeFormatted = '''
+Output {
+	OutputFormat: TXTFile @ "out"
+	record "n" @ every( 1 [d] ) : nIndividuals( species=Sprat , mass=0.1~0.2 )
+}
+'''
+			expectation = '''
+Output {
+	OutputFormat: TXTFile @ "out"
+
+	record "n" @every(1 [d]):
+		nIndividuals(species=Sprat, mass=0.1~0.2)
+}
+
+'''
+		]
+	}
+
+	@Test
+	def void testWrapsLongInitialDistribution() {
+		// greedy, before the operator: 3 terms after the attribute name, then 4 per line
+		assertFormatted[
+			allowUnformattedWhitespace = true
+			toBeFormatted = '''
+Species Sprat {
+InitialDistribution: function @ «FOR i : 0 ..< 10 SEPARATOR ' + '»«TERM»«ENDFOR»
+}
+'''
+			expectation = '''
+Species Sprat {
+	InitialDistribution: function @ «TERM» + «TERM» + «TERM»
+	+ «TERM» + «TERM» + «TERM» + «TERM»
+	+ «TERM» + «TERM» + «TERM»
+}
+
+'''
+		]
+	}
+
+	@Test
+	def void testKeepsInitialDistributionWithinLineWidth() {
+		// three terms fit after the attribute name and stay on one line
+		assertFormatted[
+			allowUnformattedWhitespace = true
+			toBeFormatted = '''
+Species Sprat {
+InitialDistribution: function @ «TERM»   *   «TERM» * «TERM»
+}
+'''
+			expectation = '''
+Species Sprat {
+	InitialDistribution: function @ «TERM» * «TERM» * «TERM»
+}
+
+'''
+		]
+	}
+
+	@Test
+	def void testLargeModelTiming() {
+		val model = '''
+			«FOR i : 0 ..< N_SPECIES_LARGE_MODEL»
+				Species S«i» {
+					ScientificName: "Species «i»"
+					InitialDistribution: function @ (1.0 - r) * (sqrt((x - 0.5) * (x - 0.5) + y * y) <= 0.3 ? (x <= 0.5 && fabs(y) < 0.08 ? 0.0 : 1.0) : 0.0)
+					SwimmingSpeed: 0.5 [m/s]
+					MaxWetMass: 450 [g]
+				}
+
+			«ENDFOR»
+		'''
+		val start = System.currentTimeMillis
+		assertFormatted[
+			allowUnformattedWhitespace = true
+			toBeFormatted = model
+		]
+		val millis = System.currentTimeMillis - start
+		Assert::assertTrue("Formatting " + N_SPECIES_LARGE_MODEL + " species took " + millis + " ms",
+			millis < MAX_MILLIS_LARGE_MODEL
+		)
+	}
+}
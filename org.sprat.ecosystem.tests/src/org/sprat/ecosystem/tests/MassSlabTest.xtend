@@ -0,0 +1,77 @@
+package org.sprat.ecosystem.tests
+
+import org.junit.Assert
+import org.junit.Test
+import org.sprat.ecosystem.helper.MassSlab
+import org.sprat.ecosystem.helper.MeshSpacing
+
+class MassSlabTest {
+
+	static val DELTA = 1.0e-9
+
+	// r in [0, 1] with nodes every 0.1, node i stands for [0.1*i - 0.05, 0.1*i + 0.05]
+	static val R_MIN = 0.0
+	static val R_MAX = 1.0
+	static val RESOLUTION = 10
+
+	def private static assertSlab(int first, int last, double firstWeight, double lastWeight, MassSlab slab) {
+		Assert::assertFalse(slab.isEmpty)
+		Assert::assertEquals(first, slab.first)
+		Assert::assertEquals(last, slab.last)
+		Assert::assertEquals(firstWeight, slab.firstWeight, DELTA)
+		Assert::assertEquals(lastWeight, slab.lastWeight, DELTA)
+	}
+
+	@Test
+	def void testEdgeWeights() {
+		assertSlab(1, 5, 0.3, 0.2, MassSlab::resolve(0.12, 0.47, R_MIN, R_MAX, RESOLUTION))
+	}
+
+	@Test
+	def void testRangeInsideOneCell() {
+		// between nodes 3 and 4, so both get a partial weight
+		assertSlab(3, 4, 0.4, 0.4, MassSlab::resolve(0.31, 0.39, R_MIN, R_MAX, RESOLUTION))
+	}
+
+	@Test
+	def void testRangeInsideOneControlInterval() {
+		assertSlab(3, 3, 0.2, 0.2, MassSlab::resolve(0.32, 0.34, R_MIN, R_MAX, RESOLUTION))
+	}
+
+	@Test
+	def void testOpenBounds() {
+		// the control intervals of the boundary nodes are clipped to the mesh
+		assertSlab(0, 10, 1.0, 1.0, MassSlab::resolve(-1.0, -1.0, R_MIN, R_MAX, RESOLUTION))
+		assertSlab(0, 5, 1.0, 0.5, MassSlab::resolve(-1.0, 0.5, R_MIN, R_MAX, RESOLUTION))
+		assertSlab(5, 10, 0.5, 1.0, MassSlab::resolve(0.5, -1.0, R_MIN, R_MAX, RESOLUTION))
+	}
+
+	@Test
+	def void testEmptyRanges() {
+		Assert::assertTrue(MassSlab::resolve(0.8, 0.2, R_MIN, R_MAX, RESOLUTION).isEmpty)
+		Assert::assertTrue(MassSlab::resolve(2.0, -1.0, R_MIN, R_MAX, RESOLUTION).isEmpty)
+		Assert::assertTrue(MassSlab::resolve(-1.0, 0.0, R_MIN, R_MAX, RESOLUTION).isEmpty)
+	}
+
+	@Test
+	def void testUniformSpacingMatchesBounds() {
+		val r = MeshSpacing::uniform(R_MIN, R_MAX, RESOLUTION)
+		assertSlab(1, 5, 0.3, 0.2, MassSlab::resolve(0.12, 0.47, r))
+		assertSlab(3, 4, 0.4, 0.4, MassSlab::resolve(0.31, 0.39, r))
+	}
+
+	@Test
+	def void testGradedEdgeWeights() {
+		// nodes 1, 10, 100, 1000 with the control intervals [1, 5.5], [5.5, 55], [55, 550], [550, 1000]
+		val r = MeshSpacing::logarithmic(1.0, 1000.0, 3)
+		assertSlab(1, 2, 25.0/49.5, 0.5, MassSlab::resolve(30.0, 302.5, r))
+		assertSlab(0, 3, 1.0, 1.0, MassSlab::resolve(-1.0, -1.0, r))
+	}
+
+	@Test
+	def void testGradedRangeInsideOneCell() {
+		// between nodes 1 and 2, across the midpoint 55
+		val r = MeshSpacing::logarithmic(1.0, 1000.0, 3)
+		assertSlab(1, 2, 5.0/49.5, 5.0/495.0, MassSlab::resolve(50.0, 60.0, r))
+	}
+}
@@ -0,0 +1,88 @@
+package org.sprat.ecosystem.tests
+
+import org.junit.Assert
+import org.junit.Test
+import org.sprat.ecosystem.helper.MeshSpacing
+
+class MeshSpacingTest {
+
+	static val DELTA = 1.0e-9
+
+	@Test
+	def void testUniformNodeLookup() {
+		val r = MeshSpacing::uniform(0.0, 1.0, 10)
+		Assert::assertTrue(r.isUniform)
+		Assert::assertEquals(0.3, r.getNode(3), DELTA)
+		Assert::assertEquals(3, r.floorNode(0.35))
+		Assert::assertEquals(4, r.ceilNode(0.35))
+		Assert::assertEquals(0.1, r.smallestCellWidth, DELTA)
+	}
+
+	@Test
+	def void testUniformNodeLookupIsClippedToMesh() {
+		val r = MeshSpacing::uniform(0.0, 1.0, 10)
+		Assert::assertEquals(0, r.floorNode(-1.0))
+		Assert::assertEquals(10, r.ceilNode(2.0))
+	}
+
+	@Test
+	def void testLogarithmicNodeLookup() {
+		// nodes 1, 10, 100, 1000
+		val r = MeshSpacing::logarithmic(1.0, 1000.0, 3)
+		Assert::assertFalse(r.isUniform)
+		Assert::assertEquals(1.0, r.getNode(0), 0.0)
+		Assert::assertEquals(10.0, r.getNode(1), DELTA)
+		Assert::assertEquals(100.0, r.getNode(2), DELTA)
+		Assert::assertEquals(1000.0, r.getNode(3), 0.0)
+		Assert::assertEquals(1, r.floorNode(50.0))
+		Assert::assertEquals(2, r.ceilNode(50.0))
+		Assert::assertEquals(9.0, r.smallestCellWidth, DELTA)
+	}
+
+	@Test
+	def void testGradedNodeLookupIsClippedToMesh() {
+		val r = MeshSpacing::logarithmic(1.0, 1000.0, 3)
+		Assert::assertEquals(0, r.floorNode(0.5))
+		Assert::assertEquals(3, r.ceilNode(2000.0))
+	}
+
+	@Test
+	def void testGeometricNodes() {
+		// the second cell is twice as wide as the first
+		val r = MeshSpacing::geometric(0.0, 3.0, 2, 2.0)
+		Assert::assertFalse(r.isUniform)
+		Assert::assertEquals(1.0, r.getNode(1), DELTA)
+		Assert::assertEquals(1.0, r.smallestCellWidth, DELTA)
+	}
+
+	@Test
+	def void testPiecewiseNodes() {
+		// two cells on each side of the breakpoint
+		val r = MeshSpacing::piecewise(0.0, 1.0, 4, #[0.2])
+		Assert::assertFalse(r.isUniform)
+		Assert::assertEquals(0.1, r.getNode(1), DELTA)
+		Assert::assertEquals(0.2, r.getNode(2), DELTA)
+		Assert::assertEquals(0.6, r.getNode(3), DELTA)
+		Assert::assertEquals(1, r.floorNode(0.15))
+		Assert::assertEquals(3, r.ceilNode(0.5))
+	}
+
+	@Test
+	def void testControlIntervals() {
+		val r = MeshSpacing::logarithmic(1.0, 1000.0, 3)
+		Assert::assertEquals(1.0, r.getControlLower(0), 0.0)
+		Assert::assertEquals(5.5, r.getControlUpper(0), DELTA)
+		Assert::assertEquals(55.0, r.getControlLower(2), DELTA)
+		Assert::assertEquals(1000.0, r.getControlUpper(3), 0.0)
+	}
+
+	@Test
+	def void testInvalidGradingFallsBackToUniform() {
+		Assert::assertTrue(MeshSpacing::logarithmic(0.0, 1.0, 10).isUniform)
+		Assert::assertTrue(MeshSpacing::geometric(0.0, 1.0, 10, 1.0).isUniform)
+		// 3 cells cannot be split evenly into 2 segments
+		Assert::assertFalse(MeshSpacing::isValidBreakpoints(0.0, 1.0, 3, #[0.5]))
+		Assert::assertTrue(MeshSpacing::piecewise(0.0, 1.0, 3, #[0.5]).isUniform)
+		Assert::assertFalse(MeshSpacing::isValidBreakpoints(0.0, 1.0, 4, #[1.5]))
+	}
+}
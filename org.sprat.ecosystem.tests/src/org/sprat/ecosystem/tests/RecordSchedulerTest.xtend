@@ -0,0 +1,58 @@
+package org.sprat.ecosystem.tests
+
+import org.junit.Assert
+import org.junit.Test
+import org.sprat.ecosystem.helper.RecordScheduler
+
+class RecordSchedulerTest {
+
+	@Test
+	def void testRecordPeriods() {
+		Assert::assertEquals(3L, RecordScheduler::getRecordPeriodSteps(10.0, 3.0))
+		// at least one step, even for intervals shorter than the time step
+		Assert::assertEquals(1L, RecordScheduler::getRecordPeriodSteps(0.25, 1.0))
+		Assert::assertEquals(9.0, RecordScheduler::getSnappedInterval(10.0, 3.0), 0.0)
+		// without a fixed time step the interval is kept
+		Assert::assertEquals(10.0, RecordScheduler::getSnappedInterval(10.0, 0.0), 0.0)
+		Assert::assertTrue(RecordScheduler::isAlignedToTimeStep(9.0, 3.0))
+		Assert::assertFalse(RecordScheduler::isAlignedToTimeStep(10.0, 3.0))
+	}
+
+	@Test
+	def void testScheduleLength() {
+		Assert::assertEquals(1L, RecordScheduler::getScheduleLength(#[]))
+		Assert::assertEquals(12L, RecordScheduler::getScheduleLength(#[2L, 3L, 4L]))
+		Assert::assertEquals(RecordScheduler::MAX_TABLE_LENGTH as long,
+			RecordScheduler::getScheduleLength(#[RecordScheduler::MAX_TABLE_LENGTH as long, 2L]))
+	}
+
+	@Test
+	def void testScheduleLengthIsCapped() {
+		val overCap = RecordScheduler::MAX_TABLE_LENGTH + 1L
+		Assert::assertEquals(overCap, RecordScheduler::getScheduleLength(#[RecordScheduler::MAX_TABLE_LENGTH as long, 3L]))
+		// the product of the two primes would overflow a table by far
+		Assert::assertEquals(overCap, RecordScheduler::getScheduleLength(#[4093L, 4091L]))
+		Assert::assertEquals(overCap, RecordScheduler::getScheduleLength(#[4097L]))
+	}
+
+	@Test
+	def void testTabulation() {
+		Assert::assertTrue(RecordScheduler::isTabulated(newLinkedHashMap(2L -> #[0], 3L -> #[1, 2])))
+		Assert::assertFalse(RecordScheduler::isTabulated(newLinkedHashMap(4093L -> #[0], 4091L -> #[1])))
+	}
+
+	@Test
+	def void testScheduleTable() {
+		// group 0 fires every 2 steps, group 1 every 3
+		val table = RecordScheduler::getScheduleTable(newLinkedHashMap(2L -> #[0], 3L -> #[1, 2]))
+		Assert::assertEquals(#[3L, 0L, 1L, 2L, 1L, 0L], table)
+	}
+
+	@Test
+	def void testMaskType() {
+		Assert::assertEquals('uint8_t', RecordScheduler::getMaskType(8))
+		Assert::assertEquals('uint16_t', RecordScheduler::getMaskType(9))
+		Assert::assertEquals('uint32_t', RecordScheduler::getMaskType(32))
+		Assert::assertEquals('uint64_t', RecordScheduler::getMaskType(64))
+	}
+}
@@ -0,0 +1,81 @@
+package org.sprat.ecosystem.tests
+
+import org.junit.Assert
+import org.junit.Test
+import org.sprat.ecosystem.helper.ValueInterval
+
+class ValueIntervalTest {
+
+	def private static assertInterval(double lower, double upper, ValueInterval interval) {
+		Assert::assertEquals(lower, interval.lower, 0.0)
+		Assert::assertEquals(upper, interval.upper, 0.0)
+	}
+
+	@Test
+	def void testArithmetic() {
+		val a = new ValueInterval(-1.0, 2.0)
+		val b = new ValueInterval(3.0, 4.0)
+		assertInterval(2.0, 6.0, a.add(b))
+		assertInterval(-5.0, -1.0, a.subtract(b))
+		assertInterval(-4.0, 8.0, a.multiply(b))
+		assertInterval(0.25, 1.0, new ValueInterval(1.0, 2.0).divide(new ValueInterval(2.0, 4.0)))
+	}
+
+	@Test
+	def void testZeroTimesUnboundedIsZero() {
+		Assert::assertTrue(ValueInterval::FALSE.multiply(ValueInterval::ALL).isZero)
+		assertInterval(0.0, Double::POSITIVE_INFINITY,
+			new ValueInterval(0.0, 1.0).multiply(new ValueInterval(0.0, Double::POSITIVE_INFINITY)))
+	}
+
+	@Test
+	def void testDivisionByIntervalContainingZero() {
+		assertInterval(Double::NEGATIVE_INFINITY, Double::POSITIVE_INFINITY,
+			ValueInterval::point(1.0).divide(new ValueInterval(-1.0, 1.0)))
+	}
+
+	@Test
+	def void testNaNIsWidened() {
+		assertInterval(Double::NEGATIVE_INFINITY, Double::POSITIVE_INFINITY, new ValueInterval(Double::NaN, 1.0))
+	}
+
+	@Test
+	def void testMathFunctions() {
+		assertInterval(2.0, 3.0, new ValueInterval(4.0, 9.0).applyMathFunction('sqrt'))
+		assertInterval(Double::NEGATIVE_INFINITY, Double::POSITIVE_INFINITY,
+			new ValueInterval(-1.0, 9.0).applyMathFunction('sqrt'))
+		assertInterval(0.0, 3.0, new ValueInterval(-3.0, 2.0).applyMathFunction('fabs'))
+		assertInterval(1.0, 2.0, new ValueInterval(-2.0, -1.0).applyMathFunction('fabs'))
+		assertInterval(-1.0, 1.0, ValueInterval::point(0.3).applyMathFunction('sin'))
+		assertInterval(Double::NEGATIVE_INFINITY, Double::POSITIVE_INFINITY,
+			ValueInterval::point(0.3).applyMathFunction('unknown'))
+	}
+
+	@Test
+	def void testComparisons() {
+		val low = new ValueInterval(0.0, 1.0)
+		val high = new ValueInterval(2.0, 3.0)
+		val overlapping = new ValueInterval(0.5, 2.5)
+		Assert::assertTrue(low.compare('<', high).isTrue)
+		Assert::assertTrue(high.compare('<', low).isFalse)
+		Assert::assertTrue(high.compare('>', low).isTrue)
+		Assert::assertEquals(ValueInterval::BOOL, low.compare('<', overlapping))
+		Assert::assertTrue(ValueInterval::point(1.0).compare('<=', ValueInterval::point(1.0)).isTrue)
+		Assert::assertTrue(ValueInterval::point(1.0).compare('==', ValueInterval::point(1.0)).isTrue)
+		Assert::assertTrue(low.compare('==', high).isFalse)
+		Assert::assertEquals(ValueInterval::BOOL, low.compare('==', overlapping))
+		Assert::assertTrue(low.compare('!=', high).isTrue)
+	}
+
+	@Test
+	def void testLogic() {
+		Assert::assertEquals(ValueInterval::BOOL, ValueInterval::TRUE.and(ValueInterval::BOOL))
+		Assert::assertEquals(ValueInterval::FALSE, ValueInterval::FALSE.and(ValueInterval::BOOL))
+		Assert::assertEquals(ValueInterval::TRUE, ValueInterval::TRUE.or(ValueInterval::BOOL))
+		Assert::assertEquals(ValueInterval::BOOL, ValueInterval::FALSE.or(ValueInterval::BOOL))
+		Assert::assertEquals(ValueInterval::FALSE, ValueInterval::TRUE.not)
+		Assert::assertEquals(ValueInterval::BOOL, ValueInterval::BOOL.not)
+		// any interval without 0 is true
+		Assert::assertTrue(new ValueInterval(2.0, 3.0).isTrue)
+	}
+}
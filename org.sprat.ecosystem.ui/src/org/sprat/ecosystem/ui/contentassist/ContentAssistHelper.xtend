@@ -18,13 +18,15 @@ package org.sprat.ecosystem.ui.contentassist
 
 import com.google.inject.Inject
 import org.eclipse.emf.ecore.EObject
+import org.eclipse.emf.ecore.EReference
 import org.eclipse.jface.text.templates.DocumentTemplateContext
 import org.eclipse.jface.text.templates.Template
 import org.eclipse.jface.text.templates.TemplateContextType
 import org.eclipse.jface.text.templates.TemplateProposal
 import org.eclipse.jface.viewers.StyledString
 import org.eclipse.swt.graphics.Image
-import org.eclipse.ui.plugin.AbstractUIPlugin
+import org.eclipse.xtext.scoping.IScopeProvider
+import org.eclipse.xtext.ui.IImageHelper
 import org.eclipse.xtext.ui.editor.contentassist.ConfigurableCompletionProposal
 import org.eclipse.xtext.ui.editor.contentassist.ContentAssistContext
 import org.eclipse.xtext.ui.editor.contentassist.ICompletionProposalAcceptor
@@ -66,9 +68,13 @@ class ContentAssistHelper {
 	
 	@Inject extension ModelHelper
 	
+	// plugin-wide registry shared with the label provider; it owns and disposes the images
+	@Inject IImageHelper imageHelper
+	@Inject IScopeProvider scopeProvider
+	
 	def Image loadImage(String iconFile) {
 		if(iconFile != null) {
-			return AbstractUIPlugin.imageDescriptorFromPlugin("org.sprat.ecosystem.ui", "/icons/"+iconFile).createImage();
+			return imageHelper.getImage(iconFile)
 		}
 		return null
 	}
@@ -362,16 +368,17 @@ class ContentAssistHelper {
 	}
 	
 	
-	def void createAndAcceptSpeciesNamesProposal(EObject object, ContentAssistContext context, ICompletionProposalAcceptor acceptor) {
-		val model = object.rootNode
-		for(sp : model.species) {
+	// the candidates are taken from the scope of the species reference
+	def void createAndAcceptSpeciesNamesProposal(EObject object, EReference reference, ContentAssistContext context, ICompletionProposalAcceptor acceptor) {
+		for(sp : scopeProvider.getScope(object, reference).allElements) {
+			val name = sp.name.toString
 			acceptor.accept(createConfigurableProposal(
-				sp.name,
+				name,
 				-1,
 				0,
-				sp.name.length,
-				sp.name + " - Species name",
-				sp.name + " - Species name",
+				name.length,
+				name + " - Species name",
+				name + " - Species name",
 				"species.gif",
 				RELEVANCE_SPECIES_NAME,
 				context
@@ -425,6 +432,18 @@ class ContentAssistHelper {
 				context
 			)
 	}
+	def String meshRectangular2D1DLogProposal() '''
+		Rectangular2D1D(x = ${xFrom} ~ ${xTo}, n_x = ${xN}, y = ${yFrom} ~ ${yTo}, n_y = ${yN}, r = ${rFrom} ~ ${rTo}, n_r = ${rN}, r_spacing = log)'''
+	def TemplateProposal createRectangular2D1DLogProposalProposal(ContentAssistContext context) {
+		meshRectangular2D1DLogProposal.createTemplateProposal(
+				"Rectangular2D1D (logarithmic r)",
+				"Mesh type with logarithmically spaced masses",
+				FQN_ENTITY,
+				"attribute.gif",
+				RELEVANCE_SPECIAL,
+				context
+			)
+	}
 	
 	
 	
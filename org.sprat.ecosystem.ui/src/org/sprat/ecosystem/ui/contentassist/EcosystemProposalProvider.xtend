@@ -24,6 +24,7 @@ import org.eclipse.xtext.RuleCall
 import org.eclipse.xtext.ui.editor.contentassist.ContentAssistContext
 import org.eclipse.xtext.ui.editor.contentassist.ICompletionProposalAcceptor
 import org.sprat.ecosystem.EcosystemDescription
+import org.sprat.ecosystem.ecosystem.EcosystemPackage
 import org.sprat.ecosystem.ecosystem.Entity
 import org.sprat.ecosystem.ecosystem.EntityType
 import org.sprat.ecosystem.ecosystem.PropertyAttribute
@@ -31,10 +32,8 @@ import org.sprat.ecosystem.ecosystem.PropertyAttributeValue
 import org.sprat.ecosystem.ecosystem.RangeExpressionNode
 import org.sprat.ecosystem.ecosystem.RecordAttribute
 import org.sprat.ecosystem.ecosystem.RecordFunction
-import org.sprat.ecosystem.ecosystem.RecordFunctionArgument
 import org.sprat.ecosystem.helper.ModelHelper
 import org.sprat.ecosystem.helper.SpratExprContext
-import org.sprat.ecosystem.helper.ValidationHelper
 
 import static extension org.eclipse.xtext.EcoreUtil2.*
 
@@ -45,7 +44,7 @@ class EcosystemProposalProvider extends AbstractEcosystemProposalProvider {
 	
 	@Inject extension ModelHelper  
 	@Inject extension ContentAssistHelper
-	@Inject extension ValidationHelper
+	@Inject extension ProposalIndex
 	  
 	override completeEcosystemModel_Entities(EObject object, Assignment assignment, ContentAssistContext context, ICompletionProposalAcceptor acceptor) {
 		val model = object.rootNode
@@ -76,6 +75,7 @@ class EcosystemProposalProvider extends AbstractEcosystemProposalProvider {
 			val entity = model.eContainer as Entity
 			if(entity.type == EntityType.INPUT && 'Mesh'.equals(model.name)) {
 				acceptor.accept(createRectangular2D1DProposalProposal(context))
+				acceptor.accept(createRectangular2D1DLogProposalProposal(context))
 			} else if(entity.type == EntityType.ECOSYSTEM && 'TimeStep'.equals(model.name)) {
 				acceptor.accept(createCompletionProposal("auto", "auto", loadImage("attribute.gif"), context))
 			}
@@ -87,8 +87,11 @@ class EcosystemProposalProvider extends AbstractEcosystemProposalProvider {
 	
 	override completeEntity_Attributes(EObject model, Assignment assignment, ContentAssistContext context, ICompletionProposalAcceptor acceptor) {
 		if(model instanceof Entity) {
-			for(a : model.listMissingAttributes) {
-				acceptor.accept(a.createAttributeTemplateProposal(context))
+			val present = model.attributes.filter(PropertyAttribute).map[ name ].toSet
+			for(a : model.type.findAttributes(context.prefix)) {
+				if(!present.contains(a.name)) {
+					acceptor.accept(a.createAttributeTemplateProposal(context))
+				}
 			}
 			
 			if(model.type == EntityType.OUTPUT) {
@@ -116,7 +119,7 @@ class EcosystemProposalProvider extends AbstractEcosystemProposalProvider {
 	}
 	
 	override completeRecordAttribute_RecModifier(EObject model, Assignment assignment, ContentAssistContext context, ICompletionProposalAcceptor acceptor) {
-		for(f : EcosystemDescription.RECORD_MODIFIERS.functions) {
+		for(f : findRecordModifiers(context.prefix)) {
 			acceptor.accept(f.createRecordModifierFunctionProposal(context))
 		}
 	}
@@ -125,7 +128,7 @@ class EcosystemProposalProvider extends AbstractEcosystemProposalProvider {
 		if(model.inferExprContext == SpratExprContext.UNDEFINED) {
 			return
 		}
-		for(f : EcosystemDescription.MATH_FUNCTIONS.functions) {
+		for(f : findMathFunctions(context.prefix)) {
 			acceptor.accept(f.name.createMathFunctionProposal(context))
 		}
 	}
@@ -133,15 +136,9 @@ class EcosystemProposalProvider extends AbstractEcosystemProposalProvider {
 	override complete_Identifier(EObject model, RuleCall ruleCall, ContentAssistContext context, ICompletionProposalAcceptor acceptor) {
 		val exprCtx = model.inferExprContext
 		if(exprCtx == SpratExprContext.VARIABLE_MATH) {
-			for(v : EcosystemDescription.MATH_VARIABLES) {
+			for(v : findMathVariables(context.prefix)) {
 				acceptor.accept(v.createMathVariableProposal(context))
 			}
-		} else if(exprCtx == SpratExprContext.UNDEFINED) {
-			val farg = model.getContainerOfType(RecordFunctionArgument)
-			if(farg != null && 'species'.equals(farg.name)) {
-				model.createAndAcceptSpeciesNamesProposal(context, acceptor)
-				return
-			}
 		}
 		
 		val uc = model.inferAttributeUnitCollection
@@ -158,11 +155,15 @@ class EcosystemProposalProvider extends AbstractEcosystemProposalProvider {
 		}
 	}
 	
+	override completeRecordFunctionArgument_Species(EObject model, Assignment assignment, ContentAssistContext context, ICompletionProposalAcceptor acceptor) {
+		model.createAndAcceptSpeciesNamesProposal(EcosystemPackage.Literals.RECORD_FUNCTION_ARGUMENT__SPECIES, context, acceptor)
+	}
+	
 	override complete_RecordFunction(EObject model, RuleCall ruleCall, ContentAssistContext context, ICompletionProposalAcceptor acceptor) {
 		if(model.inferExprContext != SpratExprContext.RECORD_EXPR) {
 			return
 		}
-		for(f : EcosystemDescription.RECORD_FUNCTIONS.functions) {
+		for(f : findRecordFunctions(context.prefix)) {
 			acceptor.accept(f.createRecordFunctionProposal(context))
 		}
 	}
@@ -172,14 +173,14 @@ class EcosystemProposalProvider extends AbstractEcosystemProposalProvider {
 		if(model instanceof PropertyAttributeValue || container instanceof PropertyAttributeValue) {
 			val uc = model.inferAttributeUnitCollection
 			if(uc != null && EcosystemDescription.isRealUnitCategory(uc)) {
-				for(u : uc.units) {
+				for(u : uc.findUnits(context.prefix)) {
 					acceptor.accept(u.name.createUnitProposal(uc.name, context))
 				}
 			}
 		} else if(model instanceof RangeExpressionNode || container instanceof RangeExpressionNode) {
 			val uc = model.inferRangeExpressionUnitCollection
 			if(uc != null && EcosystemDescription.isRealUnitCategory(uc)) {
-				for(u : uc.units) {
+				for(u : uc.findUnits(context.prefix)) {
 					acceptor.accept(u.name.createUnitProposal(uc.name, context))
 				}
 			}
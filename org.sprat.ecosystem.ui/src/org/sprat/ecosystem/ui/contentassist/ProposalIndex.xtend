@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.ui.contentassist
+
+import com.google.inject.Singleton
+import java.util.HashMap
+import java.util.List
+import org.sprat.ecosystem.EcosystemDescription
+import org.sprat.ecosystem.ecosystem.EntityType
+import org.sprat.ecosystem.helper.PrefixTrie
+import org.sprat.ecosystem.helper.SpratAttribute
+import org.sprat.ecosystem.helper.SpratFunction
+import org.sprat.ecosystem.helper.SpratMathFunction
+import org.sprat.ecosystem.helper.SpratUnit
+import org.sprat.ecosystem.helper.UnitCollection
+
+/**
+ * Prefix-indexed view of the {@link EcosystemDescription} catalog. The catalog
+ * is static, so the tries are built once and shared by all editors.
+ */
+@Singleton
+class ProposalIndex {
+
+	val HashMap<UnitCollection, PrefixTrie<SpratUnit>> units = new HashMap
+	val HashMap<EntityType, PrefixTrie<SpratAttribute>> attributes = new HashMap
+	val PrefixTrie<SpratFunction> recordFunctions = new PrefixTrie
+	val PrefixTrie<SpratFunction> recordModifiers = new PrefixTrie
+	val PrefixTrie<SpratMathFunction> mathFunctions = new PrefixTrie
+	val PrefixTrie<String> mathVariables = new PrefixTrie
+
+	new() {
+		for(uc : EcosystemDescription.REAL_UNIT_CATEGORIES) {
+			val trie = new PrefixTrie<SpratUnit>
+			for(u : uc.units) {
+				trie.add(u.name, u)
+			}
+			units.put(uc, trie)
+		}
+		for(t : EntityType.VALUES) {
+			val trie = new PrefixTrie<SpratAttribute>
+			for(a : EcosystemDescription.getAttributeCollection(t).attributes) {
+				trie.add(a.name, a)
+			}
+			attributes.put(t, trie)
+		}
+		for(f : EcosystemDescription.RECORD_FUNCTIONS.functions) {
+			recordFunctions.add(f.name, f)
+		}
+		for(f : EcosystemDescription.RECORD_MODIFIERS.functions) {
+			recordModifiers.add(f.name, f)
+		}
+		for(f : EcosystemDescription.MATH_FUNCTIONS.functions) {
+			mathFunctions.add(f.name, f)
+		}
+		for(v : EcosystemDescription.MATH_VARIABLES) {
+			mathVariables.add(v, v)
+		}
+	}
+
+	/*
+	 * A prefix that matches nothing may still be a camel case abbreviation,
+	 * so in that case all candidates are handed to the context's matcher.
+	 */
+	protected def <T> List<T> lookup(PrefixTrie<T> trie, String prefix) {
+		val matches = trie.findByPrefix(prefix)
+		if(matches.empty) {
+			return trie.all
+		}
+		return matches
+	}
+
+	def List<SpratUnit> findUnits(UnitCollection uc, String prefix) {
+		val trie = units.get(uc)
+		if(trie == null) {
+			return uc.units
+		}
+		// unit proposals include the opening bracket of the UNIT terminal
+		var p = prefix?:""
+		if(p.startsWith("[")) {
+			p = p.substring(1)
+		}
+		return trie.lookup(p.trim)
+	}
+
+	def List<SpratAttribute> findAttributes(EntityType t, String prefix) {
+		attributes.get(t).lookup(prefix)
+	}
+
+	def List<SpratFunction> findRecordFunctions(String prefix) {
+		recordFunctions.lookup(prefix)
+	}
+
+	def List<SpratFunction> findRecordModifiers(String prefix) {
+		recordModifiers.lookup(prefix)
+	}
+
+	def List<SpratMathFunction> findMathFunctions(String prefix) {
+		mathFunctions.lookup(prefix)
+	}
+
+	def List<String> findMathVariables(String prefix) {
+		mathVariables.lookup(prefix)
+	}
+}
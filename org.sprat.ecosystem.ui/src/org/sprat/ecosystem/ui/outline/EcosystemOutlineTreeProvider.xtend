@@ -1,24 +1,64 @@
 package org.sprat.ecosystem.ui.outline
 
+import org.eclipse.emf.ecore.EObject
+import org.eclipse.swt.graphics.Image
 import org.eclipse.xtext.ui.editor.outline.impl.DefaultOutlineTreeProvider
 import org.eclipse.xtext.ui.editor.outline.impl.DocumentRootNode
+import org.eclipse.xtext.ui.editor.outline.impl.EObjectNode
 import org.sprat.ecosystem.ecosystem.Attribute
 import org.sprat.ecosystem.ecosystem.EcosystemModel
+import org.sprat.ecosystem.ecosystem.Entity
 
 /**
  * Customization of the default outline structure.
  *
+ * Only the entities are created when the outline is (re)built; their
+ * attribute nodes are created on expansion. Labels are cached on the model
+ * elements, so a refresh only recomputes labels of entities that changed.
+ *
  * see http://www.eclipse.org/Xtext/documentation.html#outline
  */
 class EcosystemOutlineTreeProvider extends DefaultOutlineTreeProvider {
-	
+
 	def _isLeaf(Attribute a) {
 		true
 	}
-	
+	def _isLeaf(Entity e) {
+		e.attributes.empty
+	}
+
 	def void _createChildren(DocumentRootNode outlineNode, EcosystemModel model) {
 		model.entities.forEach[
 			createNode(outlineNode, it);
 		]
 	}
+
+	// only called once the entity node is expanded
+	def void _createChildren(EObjectNode outlineNode, Entity entity) {
+		entity.attributes.forEach[
+			createNode(outlineNode, it);
+		]
+	}
+
+	override protected _text(Object modelElement) {
+		if(modelElement instanceof EObject) {
+			val cache = OutlineLabelCacheAdapter.get(modelElement)
+			if(!cache.hasText) {
+				cache.text = super._text(modelElement)
+			}
+			return cache.text
+		}
+		super._text(modelElement)
+	}
+
+	override protected Image _image(Object modelElement) {
+		if(modelElement instanceof EObject) {
+			val cache = OutlineLabelCacheAdapter.get(modelElement)
+			if(!cache.hasImage) {
+				cache.image = super._image(modelElement)
+			}
+			return cache.image
+		}
+		super._image(modelElement)
+	}
 }
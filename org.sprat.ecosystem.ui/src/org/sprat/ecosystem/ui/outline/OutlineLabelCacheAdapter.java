@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.ui.outline;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.swt.graphics.Image;
+
+/**
+ * Remembers the outline label of a model element. The labels only depend on
+ * the element's own features (entity type and name, attribute name, record
+ * description), so the cache is dropped whenever the element itself changes.
+ * Elements that are replaced by a partial reparse start without an adapter.
+ */
+public class OutlineLabelCacheAdapter extends AdapterImpl {
+	Object text;
+	Image image;
+	boolean hasText = false;
+	boolean hasImage = false;
+
+	public static OutlineLabelCacheAdapter get(EObject obj) {
+		for(Object a : obj.eAdapters()) {
+			if(a instanceof OutlineLabelCacheAdapter) {
+				return (OutlineLabelCacheAdapter) a;
+			}
+		}
+		OutlineLabelCacheAdapter adapter = new OutlineLabelCacheAdapter();
+		obj.eAdapters().add(adapter);
+		return adapter;
+	}
+
+	@Override
+	public boolean isAdapterForType(Object type) {
+		return type == OutlineLabelCacheAdapter.class;
+	}
+
+	@Override
+	public void notifyChanged(Notification msg) {
+		if(!msg.isTouch()) {
+			invalidate();
+		}
+	}
+
+	public void invalidate() {
+		text = null;
+		image = null;
+		hasText = false;
+		hasImage = false;
+	}
+
+	public boolean hasText() {
+		return hasText;
+	}
+	public Object getText() {
+		return text;
+	}
+	public void setText(Object text) {
+		this.text = text;
+		this.hasText = true;
+	}
+
+	public boolean hasImage() {
+		return hasImage;
+	}
+	public Image getImage() {
+		return image;
+	}
+	public void setImage(Image image) {
+		this.image = image;
+		this.hasImage = true;
+	}
+}
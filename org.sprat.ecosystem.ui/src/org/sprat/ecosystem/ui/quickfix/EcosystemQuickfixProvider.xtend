@@ -16,9 +16,12 @@
 
 package org.sprat.ecosystem.ui.quickfix
 
+import org.eclipse.xtext.ui.editor.model.IXtextDocument
 import org.eclipse.xtext.ui.editor.quickfix.DefaultQuickfixProvider
 import org.eclipse.xtext.ui.editor.quickfix.Fix
 import org.eclipse.xtext.ui.editor.quickfix.IssueResolutionAcceptor
+import org.eclipse.xtext.util.CancelIndicator
+import org.eclipse.xtext.validation.CheckMode
 import org.eclipse.xtext.validation.Issue
 import org.sprat.ecosystem.validation.EcosystemValidator
 
@@ -38,12 +41,16 @@ class EcosystemQuickfixProvider extends DefaultQuickfixProvider {
 			"Add modifier '" + issue.data.get(0) + "' to expression.", // description
 			"attribute.gif", // icon
 			[ context |
-				val xtextDocument = context.xtextDocument
-				var content = xtextDocument.get
-				var before = content.substring(0, issue.offset + issue.length)
-				var after =  content.substring(issue.offset + issue.length, content.length)
-				content = before + issue.data.get(0) + after
-				xtextDocument.set(content)
+				context.xtextDocument.replace(issue.offset + issue.length, 0, issue.defaultModifierInsertion)
+			]
+		);
+		acceptor.accept(
+			issue,
+			"Add default modifiers to all attributes in file", // label
+			"Add the default modifier to every attribute in the file that lacks it.", // description
+			"attribute.gif", // icon
+			[ context |
+				context.xtextDocument.fixAll(EcosystemValidator::EXPRESSION_LACKS_DEFAULT_MODIFIER, [ defaultModifierInsertion ])
 			]
 		);
 	}
@@ -56,14 +63,56 @@ class EcosystemQuickfixProvider extends DefaultQuickfixProvider {
 			"Add base unit '" + issue.data.get(0) + "' to expression.", // description
 			"attribute.gif", // icon
 			[ context |
-				val xtextDocument = context.xtextDocument
-				var content = xtextDocument.get
-				var before = content.substring(0, issue.offset + issue.length)
-				var after =  content.substring(issue.offset + issue.length, content.length)
-				content = before + " [" + issue.data.get(0) + "]" + after
-				xtextDocument.set(content)
+				context.xtextDocument.replace(issue.offset + issue.length, 0, issue.baseUnitInsertion)
 			]
 		);
+		acceptor.accept(
+			issue,
+			"Add base units to all expressions in file", // label
+			"Add the base unit to every expression in the file that lacks a unit.", // description
+			"attribute.gif", // icon
+			[ context |
+				context.xtextDocument.fixAll(EcosystemValidator::EXPRESSION_LACKS_UNIT, [ baseUnitInsertion ])
+			]
+		);
+	}
+	
+	def String defaultModifierInsertion(Issue issue) {
+		issue.data.get(0)
+	}
+	def String baseUnitInsertion(Issue issue) {
+		" [" + issue.data.get(0) + "]"
+	}
+	
+	/*
+	 * Validates the document once and applies the insertions for all issues
+	 * with the given code as a single replacement, so the document is only
+	 * reparsed and revalidated once.
+	 */
+	def void fixAll(IXtextDocument document, String code, (Issue)=>String insertion) {
+		val issues = document.readOnly[ resource |
+			resource.resourceServiceProvider.resourceValidator.validate(resource, CheckMode.NORMAL_AND_FAST, CancelIndicator.NullImpl)
+		].filter[ code.equals(it.code) && !it.data.nullOrEmpty ].sortBy[ it.offset + it.length ]
+		if(issues.empty) {
+			return
+		}
+		
+		val content = document.get
+		val start = issues.head.offset + issues.head.length
+		val end = issues.last.offset + issues.last.length
+		val replacement = new StringBuilder
+		var position = start
+		var previous = -1
+		for(issue : issues) {
+			val at = issue.offset + issue.length
+			if(at != previous) {
+				replacement.append(content.substring(position, at))
+				replacement.append(insertion.apply(issue))
+				position = at
+				previous = at
+			}
+		}
+		document.replace(start, end - start, replacement.toString)
 	}
 
 //	@Fix(MyDslValidator::INVALID_NAME)
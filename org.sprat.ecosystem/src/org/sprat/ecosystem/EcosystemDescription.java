@@ -67,6 +67,8 @@ public class EcosystemDescription {
 	public static final AttributeCollection ECOSYSTEM_ATTRIBUTES = new AttributeCollection();
 	public static final AttributeCollection INPUT_ATTRIBUTES = new AttributeCollection();
 	public static final AttributeCollection OUTPUT_ATTRIBUTES = new AttributeCollection();
+	// members only, see EnsembleMember
+	public static final AttributeCollection ENSEMBLE_ATTRIBUTES = new AttributeCollection();
 	
 	
 	public static final MathFunctionCollection MATH_FUNCTIONS = new MathFunctionCollection("Math function");
@@ -233,10 +235,29 @@ public class EcosystemDescription {
 		INPUT_ATTRIBUTES.add(new SpratAttribute("Mesh", SPECIAL));
 		INPUT_ATTRIBUTES.add(new SpratAttribute("ElementType", IDENTIFIER));
 		INPUT_ATTRIBUTES.getAttribute("ElementType").getValidIdentifiers().add("P1");
+		INPUT_ATTRIBUTES.add(new SpratAttribute("InitialData", IDENTIFIER));
+		INPUT_ATTRIBUTES.getAttribute("InitialData").getValidIdentifiers().add("evaluated");
+		INPUT_ATTRIBUTES.getAttribute("InitialData").getValidIdentifiers().add("tabulated");
+		INPUT_ATTRIBUTES.getAttribute("InitialData").setOptional(true);
+		INPUT_ATTRIBUTES.add(new SpratAttribute("Parameters", IDENTIFIER));
+		INPUT_ATTRIBUTES.getAttribute("Parameters").getValidIdentifiers().add("compiled");
+		INPUT_ATTRIBUTES.getAttribute("Parameters").getValidIdentifiers().add("runtime");
+		INPUT_ATTRIBUTES.getAttribute("Parameters").setOptional(true);
+		// see ForcingHelper
+		INPUT_ATTRIBUTES.add(new SpratAttribute("TemperatureForcing", IDENTIFIER, STRING));
+		INPUT_ATTRIBUTES.getAttribute("TemperatureForcing").getValidIdentifiers().add("file");
+		INPUT_ATTRIBUTES.getAttribute("TemperatureForcing").setOptional(true);
+		INPUT_ATTRIBUTES.add(new SpratAttribute("CurrentForcing", IDENTIFIER, STRING));
+		INPUT_ATTRIBUTES.getAttribute("CurrentForcing").getValidIdentifiers().add("file");
+		INPUT_ATTRIBUTES.getAttribute("CurrentForcing").setOptional(true);
 		
 		OUTPUT_ATTRIBUTES.add(new SpratAttribute("OutputFormat", IDENTIFIER, STRING));
 		OUTPUT_ATTRIBUTES.getAttribute("OutputFormat").getValidIdentifiers().add("TXTFile");
 		OUTPUT_ATTRIBUTES.getAttribute("OutputFormat").getValidIdentifiers().add("NetCDFFile");
+		OUTPUT_ATTRIBUTES.add(new SpratAttribute("Profiling", IDENTIFIER));
+		OUTPUT_ATTRIBUTES.getAttribute("Profiling").getValidIdentifiers().add("off");
+		OUTPUT_ATTRIBUTES.getAttribute("Profiling").getValidIdentifiers().add("on");
+		OUTPUT_ATTRIBUTES.getAttribute("Profiling").setOptional(true);
 		
 		
 		
@@ -364,6 +385,9 @@ public class EcosystemDescription {
 		if(t == EntityType.OUTPUT) {
 			return OUTPUT_ATTRIBUTES;
 		}
+		if(t == EntityType.ENSEMBLE) {
+			return ENSEMBLE_ATTRIBUTES;
+		}
 		return null;
 	}
 	
@@ -4,7 +4,11 @@
 package org.sprat.ecosystem;
 
 import org.eclipse.xtext.conversion.IValueConverterService;
+import org.eclipse.xtext.resource.IDefaultResourceDescriptionStrategy;
 import org.sprat.ecosystem.converter.ExtraTerminalConverters;
+import org.sprat.ecosystem.helper.ExpressionHelper;
+import org.sprat.ecosystem.helper.InstrumentedExpressionHelper;
+import org.sprat.ecosystem.scoping.EcosystemResourceDescriptionStrategy;
 
 /**
  * Use this class to register components to be used at runtime / without the Equinox extension registry.
@@ -14,4 +18,13 @@ public class EcosystemRuntimeModule extends org.sprat.ecosystem.AbstractEcosyste
 	public Class<? extends IValueConverterService> bindIValueConverterService() {
 		return ExtraTerminalConverters.class;
 	}
+	
+	public Class<? extends IDefaultResourceDescriptionStrategy> bindIDefaultResourceDescriptionStrategy() {
+		return EcosystemResourceDescriptionStrategy.class;
+	}
+	
+	// only counts while instrumentation is enabled
+	public Class<? extends ExpressionHelper> bindExpressionHelper() {
+		return InstrumentedExpressionHelper.class;
+	}
 }
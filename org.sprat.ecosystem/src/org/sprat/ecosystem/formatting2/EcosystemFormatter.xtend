@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.formatting2
+
+import com.google.inject.Inject
+import org.eclipse.emf.ecore.EObject
+import org.eclipse.xtext.formatting2.AbstractFormatter2
+import org.eclipse.xtext.formatting2.FormatterPreferenceKeys
+import org.eclipse.xtext.formatting2.FormatterRequest
+import org.eclipse.xtext.formatting2.IFormattableDocument
+import org.eclipse.xtext.preferences.MapBasedPreferenceValues
+import org.eclipse.xtext.preferences.TypedPreferenceValues
+import org.sprat.ecosystem.ecosystem.EcosystemModel
+import org.sprat.ecosystem.ecosystem.EnsembleMember
+import org.sprat.ecosystem.ecosystem.Entity
+import org.sprat.ecosystem.ecosystem.Expression
+import org.sprat.ecosystem.ecosystem.LogicalExpressionNode
+import org.sprat.ecosystem.ecosystem.MathFunction
+import org.sprat.ecosystem.ecosystem.ParameterOverride
+import org.sprat.ecosystem.ecosystem.ProductExpressionNode
+import org.sprat.ecosystem.ecosystem.PropertyAttribute
+import org.sprat.ecosystem.ecosystem.RecordAttribute
+import org.sprat.ecosystem.ecosystem.RecordFunction
+import org.sprat.ecosystem.ecosystem.RecordModifierFunction
+import org.sprat.ecosystem.ecosystem.SumExpressionNode
+import org.sprat.ecosystem.services.EcosystemGrammarAccess
+
+import static org.sprat.ecosystem.ecosystem.EcosystemPackage.Literals.*
+
+/**
+ * This class contains custom formatting description.
+ *
+ * The formatter works on the text regions of the document, so only the
+ * requested regions are rewritten and the model is not serialized again.
+ * Comments keep their lines; the hidden regions around them are indented
+ * like the surrounding elements.
+ *
+ * see : http://www.eclipse.org/Xtext/documentation.html#formatting
+ * on how and when to use it
+ */
+class EcosystemFormatter extends AbstractFormatter2 {
+
+	public static val int MAX_LINE_WIDTH = 180
+
+	@Inject extension EcosystemGrammarAccess g
+
+	override initialize(FormatterRequest request) {
+		val preferences = new MapBasedPreferenceValues(request.preferences, newHashMap)
+		preferences.put(FormatterPreferenceKeys.maxLineWidth, MAX_LINE_WIDTH)
+		request.preferences = new TypedPreferenceValues(preferences)
+		super.initialize(request)
+	}
+
+	def dispatch void format(EcosystemModel model, extension IFormattableDocument document) {
+		// library header and imports each on their own line, followed by an empty line
+		model.regionFor.keyword(g.getEcosystemModelAccess().getLibraryKeyword_1_0()).append[oneSpace]
+		model.regionFor.feature(ECOSYSTEM_MODEL__NAME).append[setNewLines(2)]
+		for(imp : model.imports) {
+			imp.regionFor.keyword(g.getImportAccess().getImportKeyword_0()).append[oneSpace]
+			imp.append[setNewLines(if(imp == model.imports.last) 2 else 1)]
+		}
+		for(entity : model.entities) {
+			entity.format
+		}
+	}
+
+	def dispatch void format(Entity entity, extension IFormattableDocument document) {
+		val e = g.getEntityAccess()
+		val open = entity.regionFor.keyword(e.getLeftCurlyBracketKeyword_2())
+		val close = entity.regionFor.keyword(e.getClosingBraceRightCurlyBracketKeyword_4_0())
+		// indentation between { }
+		interior(open, close)[indent]
+		// newline after {
+		open.append[newLine]
+		// two newlines after }
+		entity.append[setNewLines(2)]
+
+		// newlines around Attributes
+		for(a : entity.attributes) {
+			a.format
+			a.append[newLine]
+		}
+	}
+
+	def dispatch void format(PropertyAttribute attribute, extension IFormattableDocument document) {
+		val pa = g.getPropertyAttributeAccess()
+		attribute.regionFor.assignment(pa.nameAssignment_0).append[noSpace]
+		attribute.attribute?.value?.format
+		attribute.modifier?.value?.format
+	}
+
+	def dispatch void format(RecordAttribute attribute, extension IFormattableDocument document) {
+		val ra = g.getRecordAttributeAccess()
+		attribute.prepend[setNewLines(2); highPriority]
+
+		attribute.recModifier.surround[noSpace]
+		attribute.recModifier.format
+
+		attribute.regionFor.keyword(ra.colonKeyword_4).append[newLine]
+		attribute.expression.surround[indent]
+		attribute.expression.format
+	}
+
+	def dispatch void format(EnsembleMember member, extension IFormattableDocument document) {
+		val em = g.getEnsembleMemberAccess()
+		member.regionFor.keyword(em.colonKeyword_2).prepend[noSpace]
+		member.regionFor.keywords(em.commaKeyword_4_0).forEach[prepend[noSpace]]
+		for(o : member.overrides) {
+			o.format
+		}
+	}
+
+	def dispatch void format(ParameterOverride o, extension IFormattableDocument document) {
+		val po = g.getParameterOverrideAccess()
+		o.regionFor.keyword(po.fullStopKeyword_0_1).surround[noSpace]
+		o.regionFor.keyword(po.equalsSignKeyword_2).surround[oneSpace]
+		o.value.format
+	}
+
+	def dispatch void format(RecordModifierFunction function, extension IFormattableDocument document) {
+		val rmfexpr = g.getRecordModifierFunctionAccess()
+		function.regionFor.keyword(rmfexpr.leftParenthesisKeyword_1).surround[noSpace]
+		function.regionFor.keyword(rmfexpr.closingParenthesisRightParenthesisKeyword_3_0).prepend[noSpace]
+		function.argument.format
+	}
+
+
+
+	// format Expressions
+	def dispatch void format(MathFunction expr, extension IFormattableDocument document) {
+		val mfexpr = g.getMathFunctionAccess()
+		expr.formatParentheses(document)
+		expr.regionFor.keyword(mfexpr.leftParenthesisKeyword_2).surround[noSpace]
+		expr.regionFor.keyword(mfexpr.closingParenthesisRightParenthesisKeyword_4_0).prepend[noSpace]
+		expr.argument?.format
+	}
+
+	def dispatch void format(RecordFunction expr, extension IFormattableDocument document) {
+		val rfexpr = g.getRecordFunctionAccess()
+		expr.formatParentheses(document)
+		expr.regionFor.keyword(rfexpr.leftParenthesisKeyword_2).surround[noSpace]
+		expr.regionFor.keyword(rfexpr.closingParenthesisRightParenthesisKeyword_5_0).prepend[noSpace]
+		expr.regionFor.keywords(rfexpr.commaKeyword_4_0).forEach[prepend[noSpace]]
+		for(a : expr.arguments) {
+			a.format
+		}
+	}
+
+	// long chains are wrapped before an operator once a line exceeds MAX_LINE_WIDTH
+	def dispatch void format(SumExpressionNode expr, extension IFormattableDocument document) {
+		expr.formatParentheses(document)
+		expr.regionFor.features(SUM_EXPRESSION_NODE__OPS).forEach[prepend[oneSpace; autowrap]; append[oneSpace]]
+		for(o : expr.operands) {
+			o.format
+		}
+	}
+	def dispatch void format(ProductExpressionNode expr, extension IFormattableDocument document) {
+		expr.formatParentheses(document)
+		expr.regionFor.features(PRODUCT_EXPRESSION_NODE__OPS).forEach[prepend[oneSpace; autowrap]; append[oneSpace]]
+		for(o : expr.operands) {
+			o.format
+		}
+	}
+	def dispatch void format(LogicalExpressionNode expr, extension IFormattableDocument document) {
+		expr.formatParentheses(document)
+		expr.regionFor.features(LOGICAL_EXPRESSION_NODE__OPS).forEach[prepend[oneSpace; autowrap]; append[oneSpace]]
+		for(o : expr.operands) {
+			o.format
+		}
+	}
+
+	def dispatch void format(Expression expr, extension IFormattableDocument document) {
+		expr.formatParentheses(document)
+		for(child : expr.eContents) {
+			child.format
+		}
+	}
+
+	// '(' Expression ')' belongs to the enclosed expression
+	protected def void formatParentheses(EObject expr, extension IFormattableDocument document) {
+		val aexpr = g.getAtomicExpressionAccess()
+		expr.regionFor.keywords(aexpr.leftParenthesisKeyword_0_0).forEach[append[noSpace]]
+		expr.regionFor.keywords(aexpr.rightParenthesisKeyword_0_2).forEach[prepend[noSpace]]
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.generator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Thin client of the {@link CompileDaemon}; it only needs the JRE:
+ *
+ *   CompileClient validate <model> [<library> ...]
+ *   CompileClient generate [-o <output directory>] <model> [<library> ...]
+ *   CompileClient ping|stop
+ *
+ * Diagnostics are printed to stderr and the generated files to stdout. The
+ * exit code is 0 on success, 1 if the model has errors and 3 if no daemon
+ * is running.
+ */
+public class CompileClient {
+	public static final String STATE_FILE = ".sprat-daemon";
+	public static final int EXIT_NO_DAEMON = 3;
+
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) {
+			usage();
+		}
+		final String command = args[0];
+		String outputPath = new File("src-gen").getAbsolutePath();
+		final StringBuilder files = new StringBuilder();
+		for(int i = 1; i < args.length; ++i) {
+			if("-o".equals(args[i]) && i + 1 < args.length) {
+				outputPath = new File(args[++i]).getAbsolutePath();
+			} else {
+				files.append('\t').append(new File(args[i]).getAbsolutePath());
+			}
+		}
+		if(("validate".equals(command) || "generate".equals(command)) && files.length() == 0) {
+			usage();
+		}
+
+		final String[] state;
+		try {
+			state = new String(Files.readAllBytes(getStateFile()), StandardCharsets.UTF_8).trim().split(" ");
+		} catch(IOException e) {
+			System.err.println("No compile daemon is running");
+			System.exit(EXIT_NO_DAEMON);
+			return;
+		}
+
+		try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(state[0]))) {
+			final Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+			out.write(state[1] + "\t" + command + "\t" + ("generate".equals(command) ? outputPath : "-") + files + "\n");
+			out.flush();
+
+			final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			String line;
+			while((line = in.readLine()) != null) {
+				final String[] fields = line.split("\t", 4);
+				switch(fields[0]) {
+					case "issue":
+						System.err.println(fields[2] + ": " + fields[1] + ": " + fields[3]);
+						break;
+					case "file":
+						System.out.println(fields[1]);
+						break;
+					case "done":
+						System.exit("ok".equals(fields[1]) ? 0 : 1);
+						break;
+				}
+			}
+			System.err.println("Connection to the compile daemon closed");
+			System.exit(1);
+		} catch(IOException e) {
+			System.err.println("Cannot reach the compile daemon: " + e.getMessage());
+			System.exit(EXIT_NO_DAEMON);
+		}
+	}
+
+	// written by the daemon, so the client does not load any class of the language
+	public static Path getStateFile() {
+		return Paths.get(System.getProperty("user.home"), STATE_FILE);
+	}
+
+	static void usage() {
+		System.err.println("Usage: CompileClient validate|generate [-o <output directory>] <model> [<library> ...]");
+		System.err.println("       CompileClient ping|stop");
+		System.exit(2);
+	}
+}
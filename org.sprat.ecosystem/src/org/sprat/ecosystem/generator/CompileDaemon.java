@@ -0,0 +1,344 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.generator;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.xtext.diagnostics.Severity;
+import org.eclipse.xtext.generator.IGenerator;
+import org.eclipse.xtext.generator.JavaIoFileSystemAccess;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.util.CancelIndicator;
+import org.eclipse.xtext.validation.CheckMode;
+import org.eclipse.xtext.validation.IResourceValidator;
+import org.eclipse.xtext.validation.Issue;
+import org.sprat.ecosystem.EcosystemStandaloneSetup;
+import org.sprat.ecosystem.helper.Instrumentation;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+
+/**
+ * Long-lived generator process for scripts and editors. The injector, the
+ * EMF registrations and the grammar are set up once, and the parsed models
+ * are kept between requests:
+ *
+ *   CompileDaemon [--instrument] [--port <port>]
+ *
+ * The daemon listens on the loopback interface only and writes its port and
+ * a random token to ~/.sprat-daemon, readable only by the user. Every
+ * request has to start with the token. Requests are handled one at a time.
+ *
+ * Protocol, one tab-separated line per request:
+ *
+ *   <token> validate - <model> [<library> ...]
+ *   <token> generate <output directory> <model> [<library> ...]
+ *   <token> ping|stop
+ *
+ * answered by any number of lines
+ *
+ *   issue <severity> <file>:<line> <message>
+ *   file <generated file>
+ *
+ * and a final "done ok" or "done failed". Paths must be absolute, see
+ * {@link CompileClient}.
+ *
+ * Every combination of model and libraries gets its own resource set. A
+ * changed model is reparsed in place, so its unchanged elements replay
+ * their cached diagnostics; if a library changed, the whole set is parsed
+ * again, because the scopes of the other files may refer to its species.
+ */
+public class CompileDaemon {
+	public static final int MAX_CACHED_SETS = 16;
+	public static final int READ_TIMEOUT_MILLIS = 30000;
+
+	static class CachedSet {
+		final ResourceSet set;
+		final Map<String, String> contents = new HashMap<>();
+
+		CachedSet(ResourceSet set) {
+			this.set = set;
+		}
+	}
+
+	// collects the names of the generated files
+	static class RecordingFileSystemAccess extends JavaIoFileSystemAccess {
+		final List<String> generated = new ArrayList<>();
+
+		@Override
+		public void generateFile(String fileName, String outputConfigName, CharSequence contents) {
+			super.generateFile(fileName, outputConfigName, contents);
+			generated.add(getURI(fileName, outputConfigName).toFileString());
+		}
+
+		@Override
+		public void generateFile(String fileName, String outputCfgName, InputStream content) {
+			super.generateFile(fileName, outputCfgName, content);
+			generated.add(getURI(fileName, outputCfgName).toFileString());
+		}
+	}
+
+	@Inject
+	private Provider<ResourceSet> resourceSetProvider;
+
+	@Inject
+	private IResourceValidator validator;
+
+	@Inject
+	private IGenerator generator;
+
+	@Inject
+	private Injector injector;
+
+	// least recently used first
+	final LinkedHashMap<List<String>, CachedSet> cache = new LinkedHashMap<List<String>, CachedSet>(MAX_CACHED_SETS, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<String>, CachedSet> eldest) {
+			return size() > MAX_CACHED_SETS;
+		}
+	};
+
+	String token;
+	boolean running = true;
+
+
+	public static void main(String[] args) throws IOException {
+		int port = 0;
+		for(int i = 0; i < args.length; ++i) {
+			if("--instrument".equals(args[i])) {
+				Instrumentation.getInstance().setEnabled(true);
+			} else if("--port".equals(args[i]) && i + 1 < args.length) {
+				port = Integer.parseInt(args[++i]);
+			} else {
+				System.err.println("Usage: CompileDaemon [--instrument] [--port <port>]");
+				System.exit(2);
+			}
+		}
+
+		final Injector injector = new EcosystemStandaloneSetup().createInjectorAndDoEMFRegistration();
+		injector.getInstance(CompileDaemon.class).serve(port);
+	}
+
+	public void serve(int port) throws IOException {
+		final byte[] secret = new byte[16];
+		new SecureRandom().nextBytes(secret);
+		final StringBuilder hex = new StringBuilder();
+		for(byte b : secret) {
+			hex.append(String.format("%02x", b & 0xff));
+		}
+		token = hex.toString();
+
+		try(ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			writeStateFile(server.getLocalPort());
+			System.out.println("Listening on port " + server.getLocalPort());
+			while(running) {
+				try(Socket client = server.accept()) {
+					client.setSoTimeout(READ_TIMEOUT_MILLIS);
+					handle(client);
+				} catch(IOException e) {
+					System.err.println("Request failed: " + e.getMessage());
+				}
+			}
+		} finally {
+			Files.deleteIfExists(CompileClient.getStateFile());
+		}
+	}
+
+	void writeStateFile(int port) throws IOException {
+		final Path state = CompileClient.getStateFile();
+		Files.deleteIfExists(state);
+		try {
+			Files.createFile(state, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} catch(UnsupportedOperationException e) {
+			Files.createFile(state);
+		}
+		Files.write(state, (port + " " + token + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	void handle(Socket client) throws IOException {
+		final BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+		final PrintWriter out = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+		final String line = in.readLine();
+		final String[] fields = (line == null ? new String[0] : line.split("\t"));
+		if(fields.length < 2 || !token.equals(fields[0])) {
+			out.print("done\tfailed\n");
+			out.flush();
+			return;
+		}
+
+		boolean success;
+		switch(fields[1]) {
+			case "ping":
+				success = true;
+				break;
+			case "stop":
+				running = false;
+				success = true;
+				break;
+			case "validate":
+			case "generate":
+				if(fields.length < 4) {
+					out.print("issue\tERROR\t-:0\tNo model given\n");
+					success = false;
+				} else {
+					final String outputPath = ("generate".equals(fields[1]) ? fields[2] : null);
+					try {
+						success = compile(Arrays.asList(fields).subList(3, fields.length), outputPath, out);
+					} catch(IOException | RuntimeException e) {
+						// the daemon stays up; the next request starts from a fresh resource set
+						cache.remove(Arrays.asList(fields).subList(3, fields.length));
+						out.print("issue\tERROR\t-:0\t" + String.valueOf(e.getMessage()).replace('\n', ' ').replace('\t', ' ') + "\n");
+						success = false;
+					}
+				}
+				break;
+			default:
+				out.print("issue\tERROR\t-:0\tUnknown command: " + fields[1] + "\n");
+				success = false;
+		}
+		out.print("done\t" + (success ? "ok" : "failed") + "\n");
+		out.flush();
+	}
+
+	// the first file is the model, the others are libraries
+	boolean compile(List<String> files, String outputPath, PrintWriter out) throws IOException {
+		final Resource resource = load(files);
+
+		final Instrumentation.Timer timer = Instrumentation.start("validate", resource.getURI().lastSegment());
+		final List<Issue> issues;
+		try {
+			issues = validator.validate(resource, CheckMode.ALL, CancelIndicator.NullImpl);
+		} finally {
+			timer.stop();
+		}
+		boolean hasErrors = false;
+		for(Issue issue : issues) {
+			final String file = (issue.getUriToProblem() == null ? "-" : issue.getUriToProblem().trimFragment().toFileString());
+			out.print("issue\t" + issue.getSeverity() + "\t" + file + ":" + issue.getLineNumber()
+				+ "\t" + issue.getMessage().replace('\n', ' ').replace('\t', ' ') + "\n");
+			hasErrors |= (issue.getSeverity() == Severity.ERROR);
+		}
+		if(hasErrors || outputPath == null) {
+			return !hasErrors;
+		}
+
+		final RecordingFileSystemAccess fileAccess = new RecordingFileSystemAccess();
+		injector.injectMembers(fileAccess);
+		fileAccess.setOutputPath(outputPath);
+		generator.doGenerate(resource, fileAccess);
+		for(String generated : fileAccess.generated) {
+			out.print("file\t" + generated + "\n");
+		}
+		return true;
+	}
+
+	Resource load(List<String> files) throws IOException {
+		CachedSet cached = cache.get(files);
+		if(cached == null) {
+			cached = new CachedSet(resourceSetProvider.get());
+			cache.put(new ArrayList<>(files), cached);
+		}
+
+		final List<String> changed = new ArrayList<>();
+		final Map<String, byte[]> bytes = new HashMap<>();
+		for(String file : files) {
+			final byte[] content = Files.readAllBytes(new File(file).toPath());
+			bytes.put(file, content);
+			if(!new String(content, StandardCharsets.UTF_8).equals(cached.contents.get(file))) {
+				changed.add(file);
+			}
+		}
+		final boolean libraryChanged = !changed.isEmpty() && !(changed.size() == 1 && changed.get(0).equals(files.get(0)));
+		for(String file : files) {
+			if(libraryChanged) {
+				reload(cached, file, bytes.get(file));
+			} else if(changed.contains(file)) {
+				update(cached, file, bytes.get(file));
+			}
+		}
+		Instrumentation.count(changed.isEmpty() ? "daemonCacheHit" : "daemonCacheMiss");
+		return cached.set.getResource(URI.createFileURI(files.get(0)), false);
+	}
+
+	/*
+	 * Reparses only the changed region of a loaded model, so the elements
+	 * outside of it keep their identity and their cached diagnostics, see
+	 * ValidationCacheAdapter. The parser falls back to a full reparse when
+	 * the region cannot be parsed on its own.
+	 */
+	void update(CachedSet cached, String file, byte[] content) throws IOException {
+		final Resource resource = cached.set.getResource(URI.createFileURI(file), false);
+		final String previous = cached.contents.get(file);
+		if(!(resource instanceof XtextResource) || !resource.isLoaded() || previous == null) {
+			reload(cached, file, content);
+			return;
+		}
+		final String text = new String(content, StandardCharsets.UTF_8);
+		int prefix = 0;
+		final int maxPrefix = Math.min(previous.length(), text.length());
+		while(prefix < maxPrefix && previous.charAt(prefix) == text.charAt(prefix)) {
+			++prefix;
+		}
+		int suffix = 0;
+		final int maxSuffix = maxPrefix - prefix;
+		while(suffix < maxSuffix && previous.charAt(previous.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+			++suffix;
+		}
+		((XtextResource) resource).update(prefix, previous.length() - prefix - suffix, text.substring(prefix, text.length() - suffix));
+		cached.contents.put(file, text);
+	}
+
+	// from scratch, also after a library changed, when the importing files have to be linked again
+	void reload(CachedSet cached, String file, byte[] content) throws IOException {
+		final URI uri = URI.createFileURI(file);
+		Resource resource = cached.set.getResource(uri, false);
+		if(resource == null) {
+			resource = cached.set.createResource(uri);
+		} else {
+			resource.unload();
+		}
+		resource.load(new ByteArrayInputStream(content), cached.set.getLoadOptions());
+		cached.contents.put(file, new String(content, StandardCharsets.UTF_8));
+	}
+}
@@ -17,14 +17,30 @@
 package org.sprat.ecosystem.generator
 
 import com.google.inject.Inject
+import java.util.LinkedHashMap
+import java.util.List
 import org.eclipse.emf.ecore.resource.Resource
+import org.eclipse.emf.ecore.util.EcoreUtil
 import org.eclipse.xtext.generator.IFileSystemAccess
+import org.eclipse.xtext.generator.IFileSystemAccessExtension3
 import org.eclipse.xtext.generator.IGenerator
 import org.sprat.ecosystem.EcosystemDescription
 import org.sprat.ecosystem.ecosystem.EcosystemModel
-import org.sprat.ecosystem.ecosystem.Expression
+import org.sprat.ecosystem.helper.EnsembleHelper
+import org.sprat.ecosystem.helper.ForcingFile
+import org.sprat.ecosystem.helper.ForcingHelper
 import org.sprat.ecosystem.helper.ExpressionHelper
 import org.sprat.ecosystem.helper.GeneratorHelper
+import org.sprat.ecosystem.helper.InitialDataTable
+import org.sprat.ecosystem.helper.InitialDataTabulator
+import org.sprat.ecosystem.helper.InitialSupportAnalyzer
+import org.sprat.ecosystem.helper.Instrumentation
+import org.sprat.ecosystem.helper.ModelHelper
+import org.sprat.ecosystem.helper.PredationAnalyzer
+import org.sprat.ecosystem.helper.PredatorPreyInteraction
+import org.sprat.ecosystem.helper.RecordScheduler
+import org.sprat.ecosystem.helper.ResourceEstimator
+import org.sprat.ecosystem.helper.RuntimeParameters
 
 import static extension org.sprat.ecosystem.helper.FormattingHelper.*
 
@@ -37,24 +53,153 @@ class EcosystemGenerator implements IGenerator {
 	
 	@Inject extension ExpressionHelper
 	@Inject extension GeneratorHelper
+	@Inject extension ResourceEstimator
+	@Inject extension InitialDataTabulator
+	@Inject extension ModelHelper
+	@Inject extension RuntimeParameters
+	@Inject extension RecordScheduler
+	@Inject extension InitialSupportAnalyzer
+	@Inject extension EnsembleHelper
+	@Inject extension ForcingHelper
+	@Inject extension PredationAnalyzer
 	
 	override void doGenerate(Resource resource, IFileSystemAccess fsa) {
 		val model = (resource.getContents().get(0) as EcosystemModel)
-		fsa.generateFile('model_parameters.hpp',
-			generateModelParameters(model)
-		)
-		fsa.generateFile('initial_data.hpp',
-			generateInitialDataLoading(model)
-		)
-		fsa.generateFile('fem_config.hpp',
-			generateFEMConfig(model)
-		)
-		fsa.generateFile('model_config.hpp',
-			generateModelConfig(model)
-		)
-		fsa.generateFile('recorder_setup.hpp',
-			generateRecorders(model)
-		)
+		// libraries only provide species to the scenarios importing them
+		if(model.isLibrary) {
+			return
+		}
+		prepareForParallelGeneration(model)
+		// the headers are rendered concurrently and written in this order
+		val templates = new LinkedHashMap<String, ()=>CharSequence>
+		if(model.parametersAtRuntime) {
+			templates.put('model_parameters.hpp') [
+				timed('generateRuntimeModelParameters')[ generateRuntimeModelParameters(model) ]
+			]
+			templates.put(RuntimeParameters.PARAMETER_FILE) [
+				timed('generateParameterFile')[ generateParameterFile(model) ]
+			]
+		} else if(model.hasEnsemble) {
+			templates.put('model_parameters.hpp') [
+				timed('generateEnsembleModelParameters')[ generateEnsembleModelParameters(model) ]
+			]
+		} else {
+			templates.put('model_parameters.hpp') [
+				timed('generateModelParameters')[ generateModelParameters(model) ]
+			]
+		}
+		val table = if(model.initialDataTabulated && fsa instanceof IFileSystemAccessExtension3) {
+			model.tabulateInitialData
+		}
+		if(table != null) {
+			templates.put('initial_data.hpp') [
+				timed('generateTabulatedInitialDataLoading')[ generateTabulatedInitialDataLoading(model, table) ]
+			]
+		} else {
+			templates.put('initial_data.hpp') [
+				timed('generateInitialDataLoading')[ generateInitialDataLoading(model) ]
+			]
+		}
+		templates.put('fem_config.hpp') [
+			timed('generateFEMConfig')[ generateFEMConfig(model) ]
+		]
+		templates.put('model_config.hpp') [
+			timed('generateModelConfig')[ generateModelConfig(model) ]
+		]
+		templates.put('recorder_setup.hpp') [
+			timed('generateRecorders')[ generateRecorders(model) ]
+		]
+		templates.put('resource_estimate.json') [
+			timed('generateResourceReport')[ generateResourceReport(model) ]
+		]
+		if(model.profiling) {
+			templates.put('profiling.hpp') [
+				timed('generateProfiling')[ generateProfiling(model) ]
+			]
+		}
+		if(model.hasAnyForcing) {
+			templates.put('forcing.hpp') [
+				timed('generateForcing')[ generateForcing(model) ]
+			]
+		}
+		val contents = ParallelGeneration.map(templates.values.toList)[ apply ]
+		
+		val fileNames = templates.keySet.toList
+		for(i : 0 ..< fileNames.size) {
+			if(table != null && fileNames.get(i) == 'initial_data.hpp') {
+				// the table is computed while it is streamed into the file
+				val timer = Instrumentation.start(Instrumentation.GENERATE, 'tabulateInitialData')
+				try {
+					(fsa as IFileSystemAccessExtension3).generateFile(InitialDataTabulator.TABLE_FILE,
+						table.openStream
+					)
+				} finally {
+					timer.stop
+				}
+			}
+			fsa.generateFile(fileNames.get(i), contents.get(i))
+		}
+	}
+	
+	// The templates run concurrently and must only read the model: all
+	// cross-references are resolved and the lazily built caches are filled
+	// before they start.
+	protected def void prepareForParallelGeneration(EcosystemModel model) {
+		val resource = model.eResource
+		if(resource.resourceSet != null) {
+			EcoreUtil.resolveAll(resource.resourceSet)
+		} else {
+			EcoreUtil.resolveAll(resource)
+		}
+		model.speciesIndex
+		model.recordDimensionalities
+		resource.propertyValues
+		model.importedLibraries.forEach[ eResource.propertyValues ]
+		if(!model.parametersAtRuntime) {
+			model.predatorPreyInteractions
+		}
+	}
+	
+	// times a template when instrumentation is enabled
+	protected def CharSequence timed(String template, ()=>CharSequence body) {
+		val timer = Instrumentation.start(Instrumentation.GENERATE, template)
+		try {
+			return body.apply
+		} finally {
+			timer.stop
+		}
+	}
+	
+	def generateResourceReport(EcosystemModel model) {
+		val e = model.estimateResources
+		return '''
+			{
+				"nSpecies": «e.NSpecies»,
+				"nDimensions": «e.NDimensions»,
+				"nDoFs": «e.NDoFs»,
+				"bytesPerReal": «ResourceEstimator.BYTES_PER_REAL»,
+				"fieldMemoryBytes": «e.fieldMemoryBytes»,
+				"solverOverheadBytes": «e.solverOverheadBytes»,
+				"totalMemoryBytes": «e.totalMemoryBytes»,
+				"memoryBudgetBytes": «memoryBudget»,
+				"nTimeSteps": «IF e.hasKnownTimeSteps»«e.NTimeSteps»«ELSE»null«ENDIF»,
+				"workPerStep": «e.workPerStep.formatDouble»,
+				"totalWork": «IF e.hasKnownTimeSteps»«e.totalWork.formatDouble»«ELSE»null«ENDIF»,
+				"records": [
+					«FOR r : e.records SEPARATOR ','»
+						{
+							"description": "«r.description.escapeJson»",
+							"dimensionality": «r.dimensionality»,
+							"valuesPerWrite": «r.valuesPerWrite»,
+							"nWrites": «r.NWrites»,
+							"bytes": «r.bytes»
+						}
+					«ENDFOR»
+				],
+				"totalOutputBytes": «e.totalOutputBytes»,
+				"outputBudgetBytes": «outputBudget»
+			}
+		'''
 	}
 	
 	def generateModelConfig(EcosystemModel model) {
@@ -75,6 +220,10 @@ class EcosystemGenerator implements IGenerator {
 			
 			#include "../solver.hpp"
 			typedef ElementFCTSolverFor«meshFunction.getMeshDimension»DRectMesh SolverT;
+			«IF model.hasAnyForcing»
+				
+				#include "forcing.hpp"
+			«ENDIF»
 			
 			
 			#endif /* MODEL_CONFIG_HPP_ */
@@ -85,6 +234,10 @@ class EcosystemGenerator implements IGenerator {
 	def generateFEMConfig(EcosystemModel model) {
 		val meshFunction = model.getMeshFunction
 		val meshDim = meshFunction.meshDimension
+		val nSpecies = model.nSpecies
+		val supports = (0 ..< nSpecies).map[ model.getInitialSupport(it) ].toList
+		val rDim = meshDim - 1
+		val rSpacing = rDim.getMeshSpacing(meshFunction)
 		
 		return '''
 			/*
@@ -97,17 +250,54 @@ class EcosystemGenerator implements IGenerator {
 			#define FEM_CONFIG_HPP_
 			
 			
+			«IF !rSpacing.uniform»
+				#include <algorithm>
+			«ENDIF»
+			#include <cmath>
 			#include <vector>
 			#include "../pdedsl/mesh.hpp"
 			
 			
 			typedef FEMMeshRectP1Periodic<«meshDim»> FEMMeshT;
 			
+			«IF !rSpacing.uniform»
+				// node coordinates of the graded r dimension
+				struct GradedMeshDimension {
+					static constexpr uint dimension = «rDim»;
+					static constexpr int resolution = «rSpacing.resolution»;
+					
+					static real const* nodes() {
+						static const real coordinates[resolution + 1] = {
+							«FOR row : 0 ..< (rSpacing.resolution + 8) / 8 SEPARATOR ','»
+								«FOR i : 8 * row ..< Math.min(8 * row + 8, rSpacing.resolution + 1) SEPARATOR ', '»«rSpacing.getNode(i).formatDouble»«ENDFOR»
+							«ENDFOR»
+						};
+						return coordinates;
+					}
+					
+					static int nearestNode(real position) {
+						real const* r = nodes();
+						const int upper = static_cast<int>(std::upper_bound(r, r + resolution + 1, position) - r);
+						if(upper == 0) {
+							return 0;
+						}
+						if(upper > resolution) {
+							return resolution;
+						}
+						return position - r[upper - 1] <= r[upper] - position ? upper - 1 : upper;
+					}
+				};
+				
+			«ENDIF»
 			struct MeshParameters {
 				static std::vector<RectMeshDimension> initParameters() {
 					std::vector<RectMeshDimension> dims;
 					«FOR dim : 0 ..< meshDim»
-						RectMeshDimension dim_«dim»("«dim.getMeshDimensionName(meshDim)»", Interval(«dim.getMeshDimensionMin(meshFunction).formatDouble», «dim.getMeshDimensionMax(meshFunction).formatDouble»), «dim.getMeshDimensionResolution(meshFunction)»);
+						«IF dim == rDim && !rSpacing.uniform»
+							RectMeshDimension dim_«dim»("«dim.getMeshDimensionName(meshDim)»", std::vector<real>(GradedMeshDimension::nodes(), GradedMeshDimension::nodes() + GradedMeshDimension::resolution + 1));
+						«ELSE»
+							RectMeshDimension dim_«dim»("«dim.getMeshDimensionName(meshDim)»", Interval(«dim.getMeshDimensionMin(meshFunction).formatDouble», «dim.getMeshDimensionMax(meshFunction).formatDouble»), «dim.getMeshDimensionResolution(meshFunction)»);
+						«ENDIF»
 						dims.push_back(dim_«dim»);
 					«ENDFOR»
 					return dims;
@@ -115,14 +305,117 @@ class EcosystemGenerator implements IGenerator {
 			};
 			
 			
+			// r node range of a record mass range; the nodes at the edges only count
+			// with the fraction of their control interval inside the range
+			struct MassSlab {
+				int first;
+				int last;
+				real firstWeight;
+				real lastWeight;
+				
+				constexpr MassSlab(int first, int last, real firstWeight, real lastWeight)
+					: first(first), last(last), firstWeight(firstWeight), lastWeight(lastWeight) {}
+				
+				bool empty() const {
+					return last < first;
+				}
+				real weight(int node) const {
+					return node < first || node > last ? 0.0 : (node == first ? firstWeight : (node == last ? lastWeight : 1.0));
+				}
+			};
+			
+			
+			/*
+			 * Conservative node index bounds (inclusive) of the non-zero initial
+			 * values per species, from an interval analysis of the initial
+			 * distributions. Assuming the explicit solver moves values by at most one
+			 * cell per step, a species is zero outside of its bounds widened by one
+			 * node per step in the spatial dimensions. Spawning moves mass to any
+			 * mass class, so the mass dimension is only bounded at step 0, and bounds
+			 * that grow beyond the periodic mesh are dropped.
+			 */
+			struct InitialSupport {
+				static constexpr uint nSpecies = «nSpecies»;
+				static constexpr uint nDimensions = «meshDim»;
+				
+				// zero on the whole mesh
+				static bool isEmpty(uint species) {
+					static const bool empty[«Math.max(nSpecies, 1)»] = {«FOR s : supports SEPARATOR ', '»«s == null»«ENDFOR»};
+					return empty[species];
+				}
+				
+				static int lowerNode(uint species, uint dim) {
+					static const int nodes[«Math.max(nSpecies, 1)»][nDimensions] = {«FOR s : supports SEPARATOR ', '»{«FOR dim : 0 ..< meshDim SEPARATOR ', '»«IF s == null»0«ELSE»«s.get(2*dim)»«ENDIF»«ENDFOR»}«ENDFOR»};
+					return nodes[species][dim];
+				}
+				
+				static int upperNode(uint species, uint dim) {
+					static const int nodes[«Math.max(nSpecies, 1)»][nDimensions] = {«FOR s : supports SEPARATOR ', '»{«FOR dim : 0 ..< meshDim SEPARATOR ', '»«IF s == null»-1«ELSE»«s.get(2*dim + 1)»«ENDIF»«ENDFOR»}«ENDFOR»};
+					return nodes[species][dim];
+				}
+				
+				static bool isPossiblyNonZero(uint species, int const* node, unsigned long long step) {
+					if(isEmpty(species)) {
+						return false;
+					}
+					static const bool spatial[nDimensions] = {«FOR dim : 0 ..< meshDim SEPARATOR ', '»«dim.isSpatialDimension(meshDim)»«ENDFOR»};
+					static const int resolution[nDimensions] = {«FOR dim : 0 ..< meshDim SEPARATOR ', '»«dim.getMeshDimensionResolution(meshFunction)»«ENDFOR»};
+					for(uint dim = 0; dim < nDimensions; ++dim) {
+						if(step > 0 && !spatial[dim]) {
+							continue;
+						}
+						const long long lower = lowerNode(species, dim) - static_cast<long long>(step);
+						const long long upper = upperNode(species, dim) + static_cast<long long>(step);
+						if(lower < 0 || upper > resolution[dim]) {
+							continue;
+						}
+						if(node[dim] < lower || node[dim] > upper) {
+							return false;
+						}
+					}
+					return true;
+				}
+				
+				template <class DoFT>
+				static bool isPossiblyNonZero(uint species, DoFT const& dof, unsigned long long step) {
+					static const real meshLower[nDimensions] = {«FOR dim : 0 ..< meshDim SEPARATOR ', '»«dim.getMeshDimensionMin(meshFunction).formatDouble»«ENDFOR»};
+					static const real inverseCellWidth[nDimensions] = {«FOR dim : 0 ..< meshDim SEPARATOR ', '»«(dim.getMeshDimensionResolution(meshFunction) / (dim.getMeshDimensionMax(meshFunction) - dim.getMeshDimensionMin(meshFunction))).formatDouble»«ENDFOR»};
+					int node[nDimensions];
+					for(uint dim = 0; dim < nDimensions; ++dim) {
+						«IF !rSpacing.uniform»
+							if(dim == GradedMeshDimension::dimension) {
+								node[dim] = GradedMeshDimension::nearestNode(dof.positionInDimension(dim));
+								continue;
+							}
+						«ENDIF»
+						node[dim] = static_cast<int>(std::lround((dof.positionInDimension(dim) - meshLower[dim]) * inverseCellWidth[dim]));
+					}
+					return isPossiblyNonZero(species, node, step);
+				}
+			};
+			
+			
 			#endif /* FEM_CONFIG_HPP_ */
 			
 		'''
 	}
 	
 	def generateRecorders(EcosystemModel model) {
-		val records = model.recordAttributes
+		val records = model.recordAttributes.toList
+		// the expression and modifiers of each record are rendered concurrently
+		val fragments = ParallelGeneration.map(records)[
+			new RecordFragments(expression.format, deduceDimensionality(model),
+				formatRecordModifier.toString, formatRecordModifierWithInterval.toString)
+		]
 		val writerType = model.outputFormat
+		val groups = model.recordGroups
+		val periods = groups.keySet.toList
+		val groupOfRecord = model.groupOfRecord
+		val maskType = RecordScheduler.getMaskType(groups.size)
+		val tabulated = RecordScheduler.isTabulated(groups)
+		val table = if(tabulated) RecordScheduler.getScheduleTable(groups) else emptyList
+		val members = model.ensembleMembers
+		val profiling = model.profiling
 	
 		return '''
 		/*
@@ -134,10 +427,93 @@ class EcosystemGenerator implements IGenerator {
 		#ifndef RECORDERS_HPP_
 		#define RECORDERS_HPP_
 		
+		#include <cstdint>
 		#include <vector>
 		#include "../pdedsl/sprat_pde_dsl.hpp"
 		#include "../recorder.hpp"
 		#include "model_config.hpp"
+		«IF profiling»
+			#include "profiling.hpp"
+		«ENDIF»
+		
+		
+		// Records with the same period in steps of delta_t form a group. The
+		// recorders of periodic records are built with RecordWhen::SCHEDULED:
+		// the driver calls groupsAt(step) once per step and records those with
+		// firesIn(groups, recorder), or asks fires(recorder, step) if there are
+		// more groups than bits in a mask. Ensemble recorders are numbered
+		// member*nRecorders+record.
+		struct RecordSchedule {
+			static constexpr uint nRecorders = «records.length»;
+			static constexpr uint nGroups = «groups.size»;
+			// false with 'TimeStep: auto': the recorders fire after their own time interval
+			static constexpr bool stepIndexed = «model.stepScheduled»;
+			«IF groups.empty»
+				
+				typedef uint8_t GroupMaskT;
+				
+				static GroupMaskT groupsAt(unsigned long long) {
+					return 0;
+				}
+				
+				static bool firesIn(GroupMaskT, uint) {
+					return false;
+				}
+				
+				static bool fires(uint, unsigned long long) {
+					return false;
+				}
+			«ELSE»
+				«IF groups.size <= RecordScheduler.MAX_TABLE_GROUPS»
+					typedef «maskType» GroupMaskT;
+					
+					// bit g is set if group g fires at the step
+					static GroupMaskT groupsAt(unsigned long long step) {
+						«IF tabulated»
+							static const GroupMaskT table[«table.size»] = {
+								«FOR row : 0 ..< (table.size + 15) / 16 SEPARATOR ','»
+									«FOR mask : table.subList(16 * row, Math.min(16 * row + 16, table.size)) SEPARATOR ', '»«String.format("0x%X", mask)»«ENDFOR»
+								«ENDFOR»
+							};
+							return table[step % «table.size»];
+						«ELSE»
+							GroupMaskT mask = 0;
+							for(uint g = 0; g < nGroups; ++g) {
+								if(step % groupPeriodSteps(g) == 0) {
+									mask |= GroupMaskT(1) << g;
+								}
+							}
+							return mask;
+						«ENDIF»
+					}
+					
+					static bool firesIn(GroupMaskT groups, uint recorder) {
+						const uint group = groupOfRecorder(recorder);
+						return group < nGroups && ((groups >> group) & 1);
+					}
+					
+				«ENDIF»
+				static unsigned long long groupPeriodSteps(uint group) {
+					static const unsigned long long periodSteps[nGroups] = {«FOR p : periods SEPARATOR ', '»«p»ULL«ENDFOR»};
+					return periodSteps[group];
+				}
+				
+				// nGroups for records that are not periodic
+				static uint groupOfRecorder(uint recorder) {
+					static const uint groups[nRecorders] = {«FOR g : groupOfRecord SEPARATOR ', '»«IF g < 0»nGroups«ELSE»«g»«ENDIF»«ENDFOR»};
+					return groups[recorder % nRecorders];
+				}
+				
+				static bool fires(uint recorder, unsigned long long step) {
+					«IF tabulated»
+						return firesIn(groupsAt(step), recorder);
+					«ELSE»
+						const uint group = groupOfRecorder(recorder);
+						return group < nGroups && step % groupPeriodSteps(group) == 0;
+					«ENDIF»
+				}
+			«ENDIF»
+		};
 		
 		
 		struct RecorderSetup {
@@ -147,51 +523,132 @@ class EcosystemGenerator implements IGenerator {
 				class SlaveRecorder_impl«i» : public SlaveRecorder {
 				public:
 					using SlaveRecorder::SlaveRecorder;
+					«IF profiling»
+						// one timer per step around the loop over the local dofs; one per dof would mostly time itself
+						void record() override {
+							SpratProfile::ScopedTimer timer(SpratProfile::slot(«i», SpratProfile::EVALUATE));
+							SlaveRecorder::record();
+						}
+					«ENDIF»
 				protected:
 					real recordValue(DoFT * dof) {
-						return «records.get(i).expression.format»;
+						return «fragments.get(i).expression»;
 					}
 				};
 				
 			«ENDFOR»
+			«IF profiling»
+				template <class WriterT, uint record>
+				class ProfiledWriter : public WriterT {
+				public:
+					using WriterT::WriterT;
+					void flush() override {
+						SpratProfile::ScopedTimer timer(SpratProfile::slot(record, SpratProfile::WRITE));
+						WriterT::flush();
+					}
+				};
+				
+				template <uint record>
+				class ProfiledMasterRecorder : public MasterRecorder {
+				public:
+					using MasterRecorder::MasterRecorder;
+					void gather() override {
+						SpratProfile::ScopedTimer timer(SpratProfile::slot(record, SpratProfile::GATHER));
+						MasterRecorder::gather();
+					}
+				};
+				
+			«ENDIF»
 		
-			static void setupMaster(FEMMeshT const& femMesh, std::vector<FileWriter *> & writers, std::vector<MasterRecorder *> & masterRecorders, ParallelExecutionEnvironment const* pEE, std::vector<index_t> const* dofStartIndexForProcess, std::vector<SlaveRecorder *> * slaveRecorders) {
+			«IF model.hasEnsemble»
+				// one writer and master recorder per (member, record) at index member*«records.length»+record
+				static void setupMaster(FEMMeshT const& femMesh, std::vector<FileWriter *> & writers, std::vector<MasterRecorder *> & masterRecorders, ParallelExecutionEnvironment const* pEE, std::vector<index_t> const* dofStartIndexForProcess, std::vector<SlaveRecorder *> * slaveRecorders) {
+					
+					«FOR m : 0 ..< members.size»
+						«FOR i : 0 ..< records.length»
+							writers.push_back(new «IF profiling»ProfiledWriter<«writerType»Writer, «i»>«ELSE»«writerType»Writer«ENDIF»(
+								"«model.outputModifierString»_m«m»",
+								"«records.get(i).description» [«members.get(m).name.escapeCString»]",
+								«fragments.get(i).dimensionality»,
+								«fragments.get(i).modifier»,
+								femMesh
+							));
+						«ENDFOR»
+					«ENDFOR»
+					
+			
+					«FOR m : 0 ..< members.size»
+						«FOR i : 0 ..< records.length»
+							masterRecorders.push_back(new «IF profiling»ProfiledMasterRecorder<«i»>«ELSE»MasterRecorder«ENDIF»(
+								«m * records.length + i»,
+								pEE,
+								dofStartIndexForProcess,
+								(slaveRecorders ? slaveRecorders->operator[](«m * records.length + i») : 0),
+								femMesh,
+								writers[«m * records.length + i»],
+								«fragments.get(i).dimensionality»,
+								«fragments.get(i).modifierWithInterval»
+							));
+						«ENDFOR»
+					«ENDFOR»
+				}
 				
-				«FOR i : 0 ..< records.length»
-					writers.push_back(new «writerType»Writer(
-						"«model.outputModifierString»",
-						"«records.get(i).description»",
-						«records.get(i).deduceDimensionality(model)»,
-						«records.get(i).formatRecordModifier»,
-						femMesh
-					));
-				«ENDFOR»
+				// called once per member with the solver of that member, in member order
+				static void setupSlave(SolverT const& solver, uint member, std::vector<SlaveRecorder *> & recorders) {
+					switch(member) {
+						«FOR m : 0 ..< members.size»
+							case «m»:
+								«FOR i : 0 ..< records.length»
+									recorders.push_back(new SlaveRecorder_impl«i»(
+										«m * records.length + i»,
+										solver,
+										«fragments.get(i).dimensionality»,
+										«fragments.get(i).modifierWithInterval»
+									));
+								«ENDFOR»
+								break;
+						«ENDFOR»
+					}
+				}
+			«ELSE»
+				static void setupMaster(FEMMeshT const& femMesh, std::vector<FileWriter *> & writers, std::vector<MasterRecorder *> & masterRecorders, ParallelExecutionEnvironment const* pEE, std::vector<index_t> const* dofStartIndexForProcess, std::vector<SlaveRecorder *> * slaveRecorders) {
+				
+					«FOR i : 0 ..< records.length»
+						writers.push_back(new «IF profiling»ProfiledWriter<«writerType»Writer, «i»>«ELSE»«writerType»Writer«ENDIF»(
+							"«model.outputModifierString»",
+							"«records.get(i).description»",
+							«fragments.get(i).dimensionality»,
+							«fragments.get(i).modifier»,
+							femMesh
+						));
+					«ENDFOR»
 				
 		
-				«FOR i : 0 ..< records.length»
-					masterRecorders.push_back(new MasterRecorder(
-						«i»,
-						pEE,
-						dofStartIndexForProcess,
-						(slaveRecorders ? slaveRecorders->operator[](«i») : 0),
-						femMesh,
-						writers[«i»],
-						«records.get(i).deduceDimensionality(model)»,
-						«records.get(i).formatRecordModifierWithInterval»
-					));
-				«ENDFOR»
-			}
+					«FOR i : 0 ..< records.length»
+						masterRecorders.push_back(new «IF profiling»ProfiledMasterRecorder<«i»>«ELSE»MasterRecorder«ENDIF»(
+							«i»,
+							pEE,
+							dofStartIndexForProcess,
+							(slaveRecorders ? slaveRecorders->operator[](«i») : 0),
+							femMesh,
+							writers[«i»],
+							«fragments.get(i).dimensionality»,
+							«fragments.get(i).modifierWithInterval»
+						));
+					«ENDFOR»
+				}
 			
-			static void setupSlave(SolverT const& solver, std::vector<SlaveRecorder *> & recorders) {
-				«FOR i : 0 ..< records.length»
-					recorders.push_back(new SlaveRecorder_impl«i»(
-						«i»,
-						solver,
-						«records.get(i).deduceDimensionality(model)»,
-						«records.get(i).formatRecordModifierWithInterval»
-					));
-				«ENDFOR»
-			}
+				static void setupSlave(SolverT const& solver, std::vector<SlaveRecorder *> & recorders) {
+					«FOR i : 0 ..< records.length»
+						recorders.push_back(new SlaveRecorder_impl«i»(
+							«i»,
+							solver,
+							«fragments.get(i).dimensionality»,
+							«fragments.get(i).modifierWithInterval»
+						));
+					«ENDFOR»
+				}
+			«ENDIF»
 		
 			static void freeMaster(std::vector<FileWriter *> & writers, std::vector<MasterRecorder*> const& recorders) {
 				for(auto rptr : recorders) {
@@ -200,12 +657,19 @@ class EcosystemGenerator implements IGenerator {
 				for(auto wptr : writers) {
 					delete wptr;
 				}
+				«IF profiling»
+					// after the simulation; the table is written when the process exits
+					SpratProfile::finish();
+				«ENDIF»
 			}
 			
 			static void freeSlave(std::vector<SlaveRecorder*> const& recorders) {
 				for(auto rptr : recorders) {
 					delete rptr;
 				}
+				«IF profiling»
+					SpratProfile::finish();
+				«ENDIF»
 			}
 		};
 		
@@ -217,6 +681,485 @@ class EcosystemGenerator implements IGenerator {
 
 
 	
+	/*
+	 * Streams the forcing files given in the model, see ForcingHelper. The
+	 * simulator uses SpratForcing instead of its built-in fields when the
+	 * SPRAT_*_FORCING macros are defined. Each field holds three time slices:
+	 * the two around the current time, interpolated linearly, and the next
+	 * one, which is read on a background thread while the solver works with
+	 * the others. The solver only waits for the disk when the time steps are
+	 * shorter than reading a slice.
+	 */
+	def generateForcing(EcosystemModel model) {
+		val nDim = model.meshFunction.meshDimension
+		val nForcingDim = nDim - 1
+		val coordinates = (0 ..< nForcingDim).map[ it.getMeshDimensionName(nDim) ].toList
+		val temperature = model.getForcing(ForcingHelper.TEMPERATURE)
+		val current = model.getForcing(ForcingHelper.CURRENT)
+		
+		return '''
+		/*
+		 * forcing.hpp
+		 *
+		 * Automatically-generated file. Do not edit!
+		 */
+		
+		#ifndef FORCING_HPP_
+		#define FORCING_HPP_
+		
+		#include <algorithm>
+		#include <cmath>
+		#include <cstdint>
+		#include <cstring>
+		#include <future>
+		#include <stdexcept>
+		#include <string>
+		#include <vector>
+		#include <fcntl.h>
+		#include <unistd.h>
+		#include "../pdedsl/config.hpp"
+		
+		«IF temperature != null»
+			#define SPRAT_TEMPERATURE_FORCING 1
+			#ifndef SPRAT_TEMPERATURE_FORCING_FILE
+			#define SPRAT_TEMPERATURE_FORCING_FILE "«temperature.forcingPath.escapeCString»"
+			#endif
+		«ENDIF»
+		«IF current != null»
+			#define SPRAT_CURRENT_FORCING 1
+			#ifndef SPRAT_CURRENT_FORCING_FILE
+			#define SPRAT_CURRENT_FORCING_FILE "«current.forcingPath.escapeCString»"
+			#endif
+		«ENDIF»
+		
+		
+		// a gridded time series in the format written by the tooling (magic «ForcingFile.MAGIC»)
+		template <uint nComponents, uint nDimensions>
+		class ForcingField {
+		public:
+			explicit ForcingField(const char * fileName) : fd(open(fileName, O_RDONLY)), lower(0), upper(1), weight(0.0), prefetching(-1) {
+				if(fd < 0) {
+					throw std::runtime_error(std::string("Cannot open forcing file ") + fileName);
+				}
+				char header[16];
+				readAt(header, sizeof(header), 0);
+				uint32_t components, dimensions;
+				std::memcpy(&components, header + 8, sizeof(components));
+				std::memcpy(&dimensions, header + 12, sizeof(dimensions));
+				if(std::memcmp(header, "«ForcingFile.MAGIC»", 8) != 0 || components != nComponents || dimensions != nDimensions) {
+					close(fd);
+					throw std::runtime_error(std::string("Not a matching forcing file: ") + fileName);
+				}
+				pointsPerComponent = 1;
+				for(uint d = nDimensions; d-- > 0; ) {
+					char dimension[24];
+					readAt(dimension, sizeof(dimension), 16 + 24*d);
+					uint64_t n;
+					std::memcpy(&min[d], dimension, sizeof(double));
+					std::memcpy(&max[d], dimension + 8, sizeof(double));
+					std::memcpy(&n, dimension + 16, sizeof(n));
+					nPoints[d] = static_cast<size_t>(n);
+					stride[d] = pointsPerComponent;
+					pointsPerComponent *= nPoints[d];
+				}
+				uint64_t nTimes;
+				readAt(&nTimes, sizeof(nTimes), 16 + 24*nDimensions);
+				times.resize(static_cast<size_t>(nTimes));
+				readAt(times.data(), sizeof(double)*times.size(), 16 + 24*nDimensions + 8);
+				dataOffset = 16 + 24*nDimensions + 8 + sizeof(double)*times.size();
+				
+				for(uint b = 0; b < 3; ++b) {
+					slices[b].resize(nComponents*pointsPerComponent);
+					held[b] = -1;
+				}
+				load(lower, 0);
+				if(times.size() > 1) {
+					load(upper, 1);
+				}
+				prefetch(2);
+			}
+			
+			~ForcingField() {
+				if(pending.valid()) {
+					pending.wait();
+				}
+				close(fd);
+			}
+			
+			// called once per time step, before the field is sampled
+			void advance(real t) {
+				if(times.size() < 2) {
+					return;
+				}
+				size_t k = (held[lower] >= 0) ? static_cast<size_t>(held[lower]) : 0;
+				if(t < times[k]) {
+					k = 0;
+				}
+				while(k + 2 < times.size() && times[k + 1] <= t) {
+					++k;
+				}
+				if(static_cast<long>(k) != held[lower] || static_cast<long>(k + 1) != held[upper]) {
+					settle();
+					lower = bufferOf(k);
+					if(lower < 0) {
+						lower = freeBuffer(bufferOf(k + 1));
+						load(lower, k);
+					}
+					upper = bufferOf(k + 1);
+					if(upper < 0) {
+						upper = freeBuffer(lower);
+						load(upper, k + 1);
+					}
+					prefetch(k + 2);
+				}
+				weight = std::min<real>(1.0, std::max<real>(0.0, (t - times[k]) / (times[k + 1] - times[k])));
+			}
+			
+			// multilinear in space, linear in time; read-only, safe to call from several threads
+			real operator()(uint component, real const (&position)[nDimensions]) const {
+				size_t base[nDimensions];
+				real fraction[nDimensions];
+				for(uint d = 0; d < nDimensions; ++d) {
+					const real u = std::min<real>(nPoints[d] - 1, std::max<real>(0.0, (position[d] - min[d]) / (max[d] - min[d]) * (nPoints[d] - 1)));
+					base[d] = std::min<size_t>(static_cast<size_t>(u), nPoints[d] - 2);
+					fraction[d] = u - base[d];
+				}
+				const double * a = slices[lower].data() + component*pointsPerComponent;
+				const double * b = slices[upper].data() + component*pointsPerComponent;
+				real value = 0.0;
+				for(uint corner = 0; corner < (1u << nDimensions); ++corner) {
+					real w = 1.0;
+					size_t point = 0;
+					for(uint d = 0; d < nDimensions; ++d) {
+						const uint bit = (corner >> d) & 1u;
+						w *= bit ? fraction[d] : 1.0 - fraction[d];
+						point += (base[d] + bit)*stride[d];
+					}
+					value += w*((1.0 - weight)*a[point] + weight*b[point]);
+				}
+				return value;
+			}
+			
+		private:
+			void readAt(void * target, size_t size, size_t offset) {
+				char * bytes = static_cast<char *>(target);
+				while(size > 0) {
+					const ssize_t n = pread(fd, bytes, size, static_cast<off_t>(offset));
+					if(n <= 0) {
+						throw std::runtime_error("Forcing file is truncated");
+					}
+					bytes += n;
+					size -= static_cast<size_t>(n);
+					offset += static_cast<size_t>(n);
+				}
+			}
+			
+			void load(int buffer, size_t slice) {
+				readAt(slices[buffer].data(), sizeof(double)*slices[buffer].size(), dataOffset + slice*sizeof(double)*slices[buffer].size());
+				held[buffer] = static_cast<long>(slice);
+			}
+			
+			// the prefetched buffer is neither lower nor upper, so the solver never reads it meanwhile
+			void prefetch(size_t slice) {
+				if(slice >= times.size() || bufferOf(slice) >= 0) {
+					return;
+				}
+				prefetching = freeBuffer(lower, upper);
+				held[prefetching] = -1;
+				const int buffer = prefetching;
+				pending = std::async(std::launch::async, [this, buffer, slice]() { load(buffer, slice); });
+			}
+			
+			void settle() {
+				if(pending.valid()) {
+					pending.get();
+				}
+				prefetching = -1;
+			}
+			
+			int bufferOf(size_t slice) const {
+				for(int b = 0; b < 3; ++b) {
+					if(held[b] == static_cast<long>(slice)) {
+						return b;
+					}
+				}
+				return -1;
+			}
+			
+			int freeBuffer(int usedA, int usedB = -1) const {
+				for(int b = 0; b < 3; ++b) {
+					if(b != usedA && b != usedB) {
+						return b;
+					}
+				}
+				return -1;
+			}
+			
+			int fd;
+			double min[nDimensions];
+			double max[nDimensions];
+			size_t nPoints[nDimensions];
+			size_t stride[nDimensions];
+			size_t pointsPerComponent;
+			size_t dataOffset;
+			std::vector<double> times;
+			std::vector<double> slices[3];
+			long held[3];
+			int lower, upper;
+			real weight;
+			int prefetching;
+			std::future<void> pending;
+		};
+		
+		
+		struct SpratForcing {
+			static constexpr uint nDimensions = «nForcingDim»;
+			
+			«IF temperature != null»
+				static ForcingField<1, nDimensions> & temperatureField() {
+					static ForcingField<1, nDimensions> field(SPRAT_TEMPERATURE_FORCING_FILE);
+					return field;
+				}
+				static real temperature(«FOR c : coordinates SEPARATOR ', '»real «c»«ENDFOR») {
+					const real position[nDimensions] = {«coordinates.join(', ')»};
+					return temperatureField()(0, position);
+				}
+			«ENDIF»
+			«IF current != null»
+				static ForcingField<2, nDimensions> & currentField() {
+					static ForcingField<2, nDimensions> field(SPRAT_CURRENT_FORCING_FILE);
+					return field;
+				}
+				«FOR component : #['X', 'Y'] SEPARATOR '\n'»
+					static real current«component»Velocity(«FOR c : coordinates SEPARATOR ', '»real «c»«ENDFOR») {
+						const real position[nDimensions] = {«coordinates.join(', ')»};
+						return currentField()(«IF component == 'X'»0«ELSE»1«ENDIF», position);
+					}
+				«ENDFOR»
+			«ENDIF»
+			
+			// called by the driver once per time step, before the fields are sampled
+			static void advance(real t) {
+				«IF temperature != null»
+					temperatureField().advance(t);
+				«ENDIF»
+				«IF current != null»
+					currentField().advance(t);
+				«ENDIF»
+			}
+		};
+		
+		#endif /* FORCING_HPP_ */
+		
+		'''
+	}
+	
+	
+	/*
+	 * Scoped timers for 'Profiling: on'. Each thread accumulates into its own
+	 * counters, so the timers inside the parallel loops need no
+	 * synchronization; the counters of all threads are summed when the table
+	 * is written. Every MPI rank writes its own table, suffixed with the
+	 * rank, when the process exits, so the evaluations of the slaves and the
+	 * final flushes of the writers are included.
+	 */
+	def generateProfiling(EcosystemModel model) {
+		val records = model.recordAttributes.toList
+		
+		return '''
+		/*
+		 * profiling.hpp
+		 *
+		 * Automatically-generated file. Do not edit!
+		 */
+		
+		#ifndef PROFILING_HPP_
+		#define PROFILING_HPP_
+		
+		#include <chrono>
+		#include <cstdio>
+		#include <mutex>
+		#include <string>
+		#include <vector>
+		#include <mpi.h>
+		#include "../pdedsl/config.hpp"
+		
+		#ifndef SPRAT_PROFILE_FILE
+		#define SPRAT_PROFILE_FILE "«model.outputModifierString»_profile.txt"
+		#endif
+		
+		
+		struct SpratProfile {
+			static constexpr uint nRecords = «records.size»;
+			enum Phase { EVALUATE = 0, GATHER = 1, WRITE = 2, nPhases = 3 };
+			// initial data loading comes after the records
+			static constexpr uint INIT = nRecords * nPhases;
+			static constexpr uint nSlots = INIT + 1;
+			
+			static uint slot(uint record, Phase phase) {
+				return record * nPhases + phase;
+			}
+			
+			struct Totals {
+				unsigned long long nanos[nSlots];
+				unsigned long long calls[nSlots];
+				
+				Totals() : nanos(), calls() {}
+				
+				void add(Totals const& other) {
+					for(uint s = 0; s < nSlots; ++s) {
+						nanos[s] += other.nanos[s];
+						calls[s] += other.calls[s];
+					}
+				}
+			};
+			
+			// the counters of a thread are folded into the retired totals when the thread ends
+			struct Counters : public Totals {
+				Counters() {
+					std::lock_guard<std::mutex> lock(mutex());
+					live().push_back(this);
+				}
+				~Counters() {
+					std::lock_guard<std::mutex> lock(mutex());
+					retired().add(*this);
+					std::vector<Counters *> & l = live();
+					for(size_t i = 0; i < l.size(); ++i) {
+						if(l[i] == this) {
+							l[i] = l.back();
+							l.pop_back();
+							break;
+						}
+					}
+				}
+			};
+			
+			static Counters & local() {
+				thread_local Counters counters;
+				return counters;
+			}
+			
+			class ScopedTimer {
+			public:
+				explicit ScopedTimer(uint slot) : slot(slot), start(std::chrono::steady_clock::now()) {}
+				~ScopedTimer() {
+					Counters & counters = local();
+					counters.nanos[slot] += std::chrono::duration_cast<std::chrono::nanoseconds>(std::chrono::steady_clock::now() - start).count();
+					++counters.calls[slot];
+				}
+			private:
+				const uint slot;
+				const std::chrono::steady_clock::time_point start;
+			};
+			
+			static Totals totals() {
+				std::lock_guard<std::mutex> lock(mutex());
+				Totals result = retired();
+				for(Counters const* c : live()) {
+					result.add(*c);
+				}
+				return result;
+			}
+			
+			// called by freeMaster and freeSlave while MPI is still running
+			static void finish() {
+				Output & o = output();
+				o.rank = rank();
+				o.pending = true;
+			}
+			
+			// one line per record and phase, and one for the initial data
+			static void write(char const* fileName) {
+				static const char * const phaseNames[nPhases] = {"evaluate", "gather", "write"};
+				«IF !records.empty»
+					static const char * const descriptions[nRecords] = {«FOR r : records SEPARATOR ', '»"«r.description»"«ENDFOR»};
+				«ENDIF»
+				const Totals t = totals();
+				std::FILE * f = std::fopen(fileName, "w");
+				if(!f) {
+					return;
+				}
+				std::fprintf(f, "# record\tphase\tcalls\twall_s\tdescription\n");
+				«IF !records.empty»
+					for(uint record = 0; record < nRecords; ++record) {
+						for(uint phase = 0; phase < nPhases; ++phase) {
+							const uint s = slot(record, static_cast<Phase>(phase));
+							std::fprintf(f, "%u\t%s\t%llu\t%.6f\t%s\n", record, phaseNames[phase], t.calls[s], 1e-9 * t.nanos[s], descriptions[record]);
+						}
+					}
+				«ENDIF»
+				std::fprintf(f, "-\tinit\t%llu\t%.6f\tInitialDataLoader::init\n", t.calls[INIT], 1e-9 * t.nanos[INIT]);
+				std::fclose(f);
+			}
+			
+		private:
+			// destroyed at exit, after the recorders, the writers and the counters of the main thread
+			struct Output {
+				int rank;
+				bool pending;
+				
+				// constructed first, so the statics used by write() outlive it
+				Output() : rank(0), pending(false) {
+					mutex();
+					live();
+					retired();
+				}
+				~Output() {
+					if(pending) {
+						write((std::string(SPRAT_PROFILE_FILE) + "." + std::to_string(rank)).c_str());
+					}
+				}
+			};
+			
+			static Output & output() {
+				static Output o;
+				return o;
+			}
+			
+			static int rank() {
+				int initialized = 0;
+				int finalized = 0;
+				MPI_Initialized(&initialized);
+				MPI_Finalized(&finalized);
+				int r = 0;
+				if(initialized && !finalized) {
+					MPI_Comm_rank(MPI_COMM_WORLD, &r);
+				}
+				return r;
+			}
+			
+			static std::mutex & mutex() {
+				static std::mutex m;
+				return m;
+			}
+			static std::vector<Counters *> & live() {
+				static std::vector<Counters *> l;
+				return l;
+			}
+			static Totals & retired() {
+				static Totals t;
+				return t;
+			}
+		};
+		
+		#endif /* PROFILING_HPP_ */
+		
+		'''
+	}
+	
+	
+	// nodes outside of the initial support are zero without evaluating the distribution
+	def String formatInitialValue(EcosystemModel model, int species) {
+		val support = model.getInitialSupport(species)
+		if(support == null) {
+			return '0.0'
+		}
+		if(support.coversMesh(model.meshFunction)) {
+			return model.getInitialDistribution(species).format
+		}
+		return '''InitialSupport::isPossiblyNonZero(«species», dof, 0) ? «model.getInitialDistribution(species).format» : 0.0'''.toString
+	}
+	
 	def generateInitialDataLoading(EcosystemModel model) {
 		val nSpecies = model.nSpecies
 		
@@ -231,23 +1174,169 @@ class EcosystemGenerator implements IGenerator {
 	#define INITIAL_DATA_HPP_
 	
 	#include "../pdedsl/sprat_pde_dsl.hpp"
+	#include "fem_config.hpp"
 	#include "model_parameters.hpp"
+	«IF model.profiling»
+		#include "profiling.hpp"
+	«ENDIF»
 
 	
 	struct InitialDataLoader {
 		//DistributedVector u[SpratModelParameters::nSpecies];
 		template <class VecT>
 		void init(FEMMeshT const& femMesh, VecT * u) {
+			«IF model.profiling»
+				SpratProfile::ScopedTimer timer(SpratProfile::INIT);
+			«ENDIF»
+			foreach_omp(auto dof, DoF(femMesh), , {
+				const real x = dof.positionInDimension(0);
+				const real y = dof.positionInDimension(1);
+				const real r = dof.positionInDimension(2);
+				
+				«FOR i : 0 ..< nSpecies»
+					u[«i»][dof] = «model.formatInitialValue(i)»;
+				«ENDFOR»
+			})
+		}
+	};
+	
+	#endif /* INITIAL_DATA_HPP_ */
+	
+		'''
+	}
+	
+	/*
+	 * Maps the table written next to the headers and copies it into u. The
+	 * grid index of a DoF is recovered from its position, so the table does not
+	 * depend on the DoF numbering. Without a matching table the distributions
+	 * are evaluated as in generateInitialDataLoading.
+	 */
+	def generateTabulatedInitialDataLoading(EcosystemModel model, InitialDataTable table) {
+		val nSpecies = model.nSpecies
+		val meshFunction = model.meshFunction
+		val nDim = meshFunction.meshDimension
+		// row-major index of the grid point, the last dimension varies fastest
+		val pointIndex = (1 ..< nDim).fold('i0')[index, dim | '''(«index»)*«table.getNPoints(dim)» + i«dim»'''.toString]
+		
+		return '''
+	/*
+	 * initial_data.hpp
+	 *
+	 * Automatically-generated file. Do not edit!
+	 */
+	
+	#ifndef INITIAL_DATA_HPP_
+	#define INITIAL_DATA_HPP_
+	
+	#include <cmath>
+	#include <cstdint>
+	#include <cstring>
+	#include <fcntl.h>
+	#include <sys/mman.h>
+	#include <sys/stat.h>
+	#include <unistd.h>
+	#include "../pdedsl/sprat_pde_dsl.hpp"
+	#include "fem_config.hpp"
+	#include "model_parameters.hpp"
+	«IF model.profiling»
+		#include "profiling.hpp"
+	«ENDIF»
+	
+	#ifndef SPRAT_INITIAL_DATA_FILE
+	#define SPRAT_INITIAL_DATA_FILE "«InitialDataTabulator.TABLE_FILE»"
+	#endif
+	
+	
+	struct InitialDataLoader {
+		static constexpr uint64_t tableHash = «String.format("0x%016XULL", table.hash)»;
+		static constexpr size_t tableHeaderSize = «table.headerSize»;
+		static constexpr size_t tablePointsPerSpecies = «table.NPointsTotal»;
+		
+		//DistributedVector u[SpratModelParameters::nSpecies];
+		template <class VecT>
+		void init(FEMMeshT const& femMesh, VecT * u) {
+			«IF model.profiling»
+				SpratProfile::ScopedTimer timer(SpratProfile::INIT);
+			«ENDIF»
+			size_t mappedSize = 0;
+			void * mapped = mapTable(mappedSize);
+			if(!mapped) {
+				initEvaluated(femMesh, u);
+				return;
+			}
+			const double * table = reinterpret_cast<const double *>(static_cast<const char *>(mapped) + tableHeaderSize);
+			
+			foreach_omp(auto dof, DoF(femMesh), , {
+				«FOR dim : 0 ..< nDim»
+					«IF !dim.getMeshSpacing(meshFunction).uniform»
+						const size_t i«dim» = static_cast<size_t>(GradedMeshDimension::nearestNode(dof.positionInDimension(«dim»)));
+					«ELSE»
+						const size_t i«dim» = static_cast<size_t>(std::lround((dof.positionInDimension(«dim») - («dim.getMeshDimensionMin(meshFunction).formatDouble»)) * «(dim.getMeshDimensionResolution(meshFunction) / (dim.getMeshDimensionMax(meshFunction) - dim.getMeshDimensionMin(meshFunction))).formatDouble»));
+					«ENDIF»
+				«ENDFOR»
+				const size_t point = «pointIndex»;
+				
+				«FOR i : 0 ..< nSpecies»
+					u[«i»][dof] = table[«i»*tablePointsPerSpecies + point];
+				«ENDFOR»
+			})
+			
+			munmap(mapped, mappedSize);
+		}
+		
+		template <class VecT>
+		void initEvaluated(FEMMeshT const& femMesh, VecT * u) {
 			foreach_omp(auto dof, DoF(femMesh), , {
 				const real x = dof.positionInDimension(0);
 				const real y = dof.positionInDimension(1);
 				const real r = dof.positionInDimension(2);
 				
 				«FOR i : 0 ..< nSpecies»
-					u[«i»][dof] = «model.getInitialDistribution(i).format»;
+					u[«i»][dof] = «model.formatInitialValue(i)»;
 				«ENDFOR»
 			})
 		}
+		
+	private:
+		// returns 0 unless the file is a table for exactly this model
+		static void * mapTable(size_t & mappedSize) {
+			const uint16_t endiannessProbe = 1;
+			if(*reinterpret_cast<const unsigned char *>(&endiannessProbe) != 1) {
+				return 0;
+			}
+			const int fd = open(SPRAT_INITIAL_DATA_FILE, O_RDONLY);
+			if(fd < 0) {
+				return 0;
+			}
+			struct stat st;
+			const size_t expectedSize = tableHeaderSize + sizeof(double)*SpratModelParameters::nSpecies*tablePointsPerSpecies;
+			if(fstat(fd, &st) != 0 || static_cast<size_t>(st.st_size) != expectedSize) {
+				close(fd);
+				return 0;
+			}
+			void * mapped = mmap(0, expectedSize, PROT_READ, MAP_PRIVATE, fd, 0);
+			close(fd);
+			if(mapped == MAP_FAILED) {
+				return 0;
+			}
+			
+			const char * header = static_cast<const char *>(mapped);
+			uint64_t hash;
+			uint32_t nSpecies, nDimensions;
+			std::memcpy(&hash, header + 8, sizeof(hash));
+			std::memcpy(&nSpecies, header + 16, sizeof(nSpecies));
+			std::memcpy(&nDimensions, header + 20, sizeof(nDimensions));
+			if(std::memcmp(header, "«InitialDataTable.MAGIC»", 8) != 0
+				|| hash != tableHash
+				|| nSpecies != SpratModelParameters::nSpecies
+				|| nDimensions != «nDim»
+			) {
+				munmap(mapped, expectedSize);
+				return 0;
+			}
+			mappedSize = expectedSize;
+			return mapped;
+		}
 	};
 	
 	#endif /* INITIAL_DATA_HPP_ */
@@ -256,8 +1345,18 @@ class EcosystemGenerator implements IGenerator {
 	}
 	
 	
+	/*
+	 * The species properties are static constexpr arrays of a class template,
+	 * so they can be defined in the header (C++11 requires a definition once
+	 * they are indexed at run time) and the compiler can propagate them into
+	 * the solver kernels. SpratSpeciesParameters<s> offers the properties of a
+	 * single species as scalar constants for kernels specialized per species.
+	 * Derived constants are precomputed here to spare divisions and pow calls
+	 * in hot loops.
+	 */
 	def generateModelParameters(EcosystemModel model) {
 		val nSpecies = model.nSpecies
+		val species = model.speciesEntities.toList
 		
 		return '''
 		/*
@@ -271,7 +1370,37 @@ class EcosystemGenerator implements IGenerator {
 		
 		#include "../pdedsl/config.hpp"
 		
-		struct SpratModelParameters {
+		template <class Dummy = void>
+		struct SpratSpeciesParameterArrays {
+			static constexpr uint nSpecies = «nSpecies»;
+			«FOR a : realValuedSpeciesProperties»
+				static constexpr real «a.name.toFirstLower»[nSpecies] = {«FOR s : species SEPARATOR ', '»«s.getSpeciesPropertyValue(a.name).formatDouble»«ENDFOR»};«IF a.unitCategory != EcosystemDescription.DIMENSIONLESS» // in «a.unitCategory.baseUnit»«ENDIF»
+				«IF a.hasModifier»
+					static constexpr real «a.name.toFirstLower»Modifier[nSpecies] = {«FOR s : species SEPARATOR ', '»«s.getSpeciesPropertyModifierValue(a.name).formatDouble»«ENDFOR»};«IF a.modifierUnitCategory != EcosystemDescription.DIMENSIONLESS» // in «a.modifierUnitCategory.baseUnit»«ENDIF»
+				«ENDIF»
+			«ENDFOR»
+			
+			// derived constants
+			«FOR a : invertibleSpeciesProperties»
+				static constexpr real «a.inverseName»[nSpecies] = {«FOR s : species SEPARATOR ', '»«(1.0/s.getSpeciesPropertyValue(a.name)).formatDouble»«ENDFOR»};«IF a.unitCategory != EcosystemDescription.DIMENSIONLESS» // in 1/(«a.unitCategory.baseUnit»)«ENDIF»
+			«ENDFOR»
+			// length = lengthFromWetMassCoefficient * wetMass^inverseLengthWeightParameter_b
+			static constexpr real lengthFromWetMassCoefficient[nSpecies] = {«FOR s : species SEPARATOR ', '»«s.lengthFromWetMassCoefficient.formatDouble»«ENDFOR»};
+		};
+		
+		«FOR a : realValuedSpeciesProperties»
+			template <class Dummy> constexpr real SpratSpeciesParameterArrays<Dummy>::«a.name.toFirstLower»[];
+			«IF a.hasModifier»
+				template <class Dummy> constexpr real SpratSpeciesParameterArrays<Dummy>::«a.name.toFirstLower»Modifier[];
+			«ENDIF»
+		«ENDFOR»
+		«FOR a : invertibleSpeciesProperties»
+			template <class Dummy> constexpr real SpratSpeciesParameterArrays<Dummy>::«a.inverseName»[];
+		«ENDFOR»
+		template <class Dummy> constexpr real SpratSpeciesParameterArrays<Dummy>::lengthFromWetMassCoefficient[];
+		
+		
+		struct SpratModelParameters : public SpratSpeciesParameterArrays<> {
 			static constexpr real t_max = «model.getTMax.formatDouble»; // in s
 			static constexpr real delta_t = «model.timeStep.formatDouble»; // in s
 			static constexpr uint nDimensions = «model.meshFunction.meshDimension»;
@@ -279,27 +1408,396 @@ class EcosystemGenerator implements IGenerator {
 			«FOR a : realValuedEcosystemProperties»
 				static constexpr real «a.name.toFirstLower» = «model.getEcosystemAttributeValue(a.name).formatDouble»;«IF a.unitCategory != EcosystemDescription.DIMENSIONLESS» // in «a.unitCategory.baseUnit»«ENDIF»
 			«ENDFOR»
-			static constexpr real inversePredatorPreyRatio = 1.0/predatorPreyRatio;
+			«FOR a : invertibleEcosystemProperties»
+				static constexpr real «a.inverseName» = 1.0/«a.name.toFirstLower»;
+			«ENDFOR»
+		};
+		
+		
+		template <uint species>
+		struct SpratSpeciesParameters;
+		
+		«FOR i : 0 ..< nSpecies»
+			// species «i»«IF species.get(i).name != null»: «species.get(i).name»«ENDIF»
+			template <>
+			struct SpratSpeciesParameters<«i»> {
+				«FOR a : realValuedSpeciesProperties»
+					static constexpr real «a.name.toFirstLower» = «species.get(i).getSpeciesPropertyValue(a.name).formatDouble»;
+					«IF a.hasModifier»
+						static constexpr real «a.name.toFirstLower»Modifier = «species.get(i).getSpeciesPropertyModifierValue(a.name).formatDouble»;
+					«ENDIF»
+				«ENDFOR»
+				«FOR a : invertibleSpeciesProperties»
+					static constexpr real «a.inverseName» = «(1.0/species.get(i).getSpeciesPropertyValue(a.name)).formatDouble»;
+				«ENDFOR»
+				static constexpr real lengthFromWetMassCoefficient = «species.get(i).lengthFromWetMassCoefficient.formatDouble»;
+			};
+			
+		«ENDFOR»
+		
+		«model.generateInteractionLists(model.predatorPreyInteractions)»
+		
+		#endif /* MODEL_PARAMETERS_HPP_ */
+		
+		'''
+	}
+	
+	
+	/*
+	 * Ensemble variant of the above: every overridable property gets an
+	 * innermost ensemble dimension, so kernels can vectorize across the
+	 * members. Modifiers and everything else are shared by all members.
+	 * SpratSpeciesParameters<s> points to the member row of the species.
+	 */
+	def generateEnsembleModelParameters(EcosystemModel model) {
+		val nSpecies = model.nSpecies
+		val species = model.speciesEntities.toList
+		val members = model.ensembleMembers
+		
+		return '''
+		/*
+		 * model_parameters.hpp
+		 *
+		 * Automatically-generated file. Do not edit!
+		 */
+		
+		#ifndef MODEL_PARAMETERS_HPP_
+		#define MODEL_PARAMETERS_HPP_
+		
+		#include "../pdedsl/config.hpp"
+		
+		template <class Dummy = void>
+		struct SpratEnsembleParameterArrays {
+			static constexpr uint nSpecies = «nSpecies»;
+			static constexpr uint nEnsemble = «members.size»;
+			
+			«FOR a : realValuedEcosystemProperties»
+				static constexpr real «a.name.toFirstLower»[nEnsemble] = {«FOR m : members SEPARATOR ', '»«m.getMemberEcosystemPropertyValue(model, a.name).formatDouble»«ENDFOR»};«IF a.unitCategory != EcosystemDescription.DIMENSIONLESS» // in «a.unitCategory.baseUnit»«ENDIF»
+			«ENDFOR»
+			«FOR a : realValuedSpeciesProperties»
+				static constexpr real «a.name.toFirstLower»[nSpecies][nEnsemble] = {«FOR s : species SEPARATOR ', '»{«FOR m : members SEPARATOR ', '»«m.getMemberSpeciesPropertyValue(s, a.name).formatDouble»«ENDFOR»}«ENDFOR»};«IF a.unitCategory != EcosystemDescription.DIMENSIONLESS» // in «a.unitCategory.baseUnit»«ENDIF»
+				«IF a.hasModifier»
+					static constexpr real «a.name.toFirstLower»Modifier[nSpecies] = {«FOR s : species SEPARATOR ', '»«s.getSpeciesPropertyModifierValue(a.name).formatDouble»«ENDFOR»};«IF a.modifierUnitCategory != EcosystemDescription.DIMENSIONLESS» // in «a.modifierUnitCategory.baseUnit»«ENDIF»
+				«ENDIF»
+			«ENDFOR»
+			
+			// derived constants
+			«FOR a : invertibleEcosystemProperties»
+				static constexpr real «a.inverseName»[nEnsemble] = {«FOR m : members SEPARATOR ', '»«(1.0/m.getMemberEcosystemPropertyValue(model, a.name)).formatDouble»«ENDFOR»};
+			«ENDFOR»
+			«FOR a : invertibleSpeciesProperties»
+				static constexpr real «a.inverseName»[nSpecies][nEnsemble] = {«FOR s : species SEPARATOR ', '»{«FOR m : members SEPARATOR ', '»«(1.0/m.getMemberSpeciesPropertyValue(s, a.name)).formatDouble»«ENDFOR»}«ENDFOR»};
+			«ENDFOR»
+			// length = lengthFromWetMassCoefficient * wetMass^inverseLengthWeightParameter_b
+			static constexpr real lengthFromWetMassCoefficient[nSpecies][nEnsemble] = {«FOR s : species SEPARATOR ', '»{«FOR m : members SEPARATOR ', '»«m.getMemberLengthFromWetMassCoefficient(s).formatDouble»«ENDFOR»}«ENDFOR»};
+		};
+		
+		«FOR a : realValuedEcosystemProperties»
+			template <class Dummy> constexpr real SpratEnsembleParameterArrays<Dummy>::«a.name.toFirstLower»[];
+		«ENDFOR»
+		«FOR a : realValuedSpeciesProperties»
+			template <class Dummy> constexpr real SpratEnsembleParameterArrays<Dummy>::«a.name.toFirstLower»[][nEnsemble];
+			«IF a.hasModifier»
+				template <class Dummy> constexpr real SpratEnsembleParameterArrays<Dummy>::«a.name.toFirstLower»Modifier[];
+			«ENDIF»
+		«ENDFOR»
+		«FOR a : invertibleEcosystemProperties»
+			template <class Dummy> constexpr real SpratEnsembleParameterArrays<Dummy>::«a.inverseName»[];
+		«ENDFOR»
+		«FOR a : invertibleSpeciesProperties»
+			template <class Dummy> constexpr real SpratEnsembleParameterArrays<Dummy>::«a.inverseName»[][nEnsemble];
+		«ENDFOR»
+		template <class Dummy> constexpr real SpratEnsembleParameterArrays<Dummy>::lengthFromWetMassCoefficient[][nEnsemble];
+		
+		
+		struct SpratModelParameters : public SpratEnsembleParameterArrays<> {
+			static constexpr real t_max = «model.getTMax.formatDouble»; // in s
+			static constexpr real delta_t = «model.timeStep.formatDouble»; // in s
+			static constexpr uint nDimensions = «model.meshFunction.meshDimension»;
+			static constexpr uint nSpecies = «nSpecies»;
+			static constexpr uint nEnsemble = «members.size»;
+			
+			static const char * memberName(uint member) {
+				static const char * const names[nEnsemble] = {«FOR m : members SEPARATOR ', '»"«m.name.escapeCString»"«ENDFOR»};
+				return names[member];
+			}
+		};
+		
+		
+		template <uint species>
+		struct SpratSpeciesParameters {
+			static_assert(species < SpratModelParameters::nSpecies, "species index out of range");
 			«FOR a : realValuedSpeciesProperties»
-				const real «a.name.toFirstLower»[nSpecies];
+				static constexpr real const* «a.name.toFirstLower» = SpratModelParameters::«a.name.toFirstLower»[species];
 				«IF a.hasModifier»
-					const real «a.name.toFirstLower»Modifier[nSpecies];
+					static constexpr real «a.name.toFirstLower»Modifier = SpratModelParameters::«a.name.toFirstLower»Modifier[species];
 				«ENDIF»
 			«ENDFOR»
+			«FOR a : invertibleSpeciesProperties»
+				static constexpr real const* «a.inverseName» = SpratModelParameters::«a.inverseName»[species];
+			«ENDFOR»
+			static constexpr real const* lengthFromWetMassCoefficient = SpratModelParameters::lengthFromWetMassCoefficient[species];
+		};
+		
+		«FOR a : realValuedSpeciesProperties»
+			template <uint species> constexpr real const* SpratSpeciesParameters<species>::«a.name.toFirstLower»;
+			«IF a.hasModifier»
+				template <uint species> constexpr real SpratSpeciesParameters<species>::«a.name.toFirstLower»Modifier;
+			«ENDIF»
+		«ENDFOR»
+		«FOR a : invertibleSpeciesProperties»
+			template <uint species> constexpr real const* SpratSpeciesParameters<species>::«a.inverseName»;
+		«ENDFOR»
+		template <uint species> constexpr real const* SpratSpeciesParameters<species>::lengthFromWetMassCoefficient;
 		
-			SpratModelParameters() :
-				«FOR a : realValuedSpeciesProperties SEPARATOR ','»
-					«a.name.toFirstLower»«IF a.unitCategory != EcosystemDescription.DIMENSIONLESS» // in «a.unitCategory.baseUnit»«ENDIF»
-						{«FOR s : model.speciesEntities SEPARATOR ', '»«(s.getSpeciesPropertyAttribute(a.name).attribute.value as Expression).eval.formatDouble»«ENDFOR»}«IF a.hasModifier», 
-		«a.name.toFirstLower»Modifier«IF a.modifierUnitCategory != EcosystemDescription.DIMENSIONLESS» // in «a.modifierUnitCategory.baseUnit»«ENDIF»
-						{«FOR s : model.speciesEntities SEPARATOR ', '»«(s.getSpeciesPropertyAttribute(a.name).modifier.value as Expression).eval.formatDouble»«ENDFOR»}«ENDIF»
+		
+		«model.generateInteractionLists(model.predatorPreyInteractions)»
+		
+		#endif /* MODEL_PARAMETERS_HPP_ */
+		
+		'''
+	}
+	
+	
+	/*
+	 * Same interface as above, but only the structure is compiled in. The
+	 * values are read from the parameter file when the simulator starts, and
+	 * the derived constants are computed from them, so the header does not
+	 * change when a value changes. A file that does not match the structure
+	 * hash aborts the simulator before main.
+	 */
+	def generateRuntimeModelParameters(EcosystemModel model) {
+		val nSpecies = model.nSpecies
+		
+		return '''
+		/*
+		 * model_parameters.hpp
+		 *
+		 * Automatically-generated file. Do not edit!
+		 */
+		
+		#ifndef MODEL_PARAMETERS_HPP_
+		#define MODEL_PARAMETERS_HPP_
+		
+		#include <cmath>
+		#include <cstdlib>
+		#include <fstream>
+		#include <iostream>
+		#include <limits>
+		#include <string>
+		#include "../pdedsl/config.hpp"
+		
+		#ifndef SPRAT_PARAMETER_FILE
+		#define SPRAT_PARAMETER_FILE "«RuntimeParameters.PARAMETER_FILE»"
+		#endif
+		
+		template <class Dummy = void>
+		struct SpratParameterStorage {
+			static constexpr uint nSpecies = «nSpecies»;
+			static constexpr uint nDimensions = «model.meshFunction.meshDimension»;
+			static constexpr unsigned long long structureHash = «String.format("0x%016XULL", model.parameterStructureHash)»;
+			
+			static real t_max; // in s
+			static real delta_t; // in s
+			«FOR a : realValuedEcosystemProperties»
+				static real «a.name.toFirstLower»;«IF a.unitCategory != EcosystemDescription.DIMENSIONLESS» // in «a.unitCategory.baseUnit»«ENDIF»
+			«ENDFOR»
+			«FOR a : realValuedSpeciesProperties»
+				static real «a.name.toFirstLower»[nSpecies];«IF a.unitCategory != EcosystemDescription.DIMENSIONLESS» // in «a.unitCategory.baseUnit»«ENDIF»
+				«IF a.hasModifier»
+					static real «a.name.toFirstLower»Modifier[nSpecies];«IF a.modifierUnitCategory != EcosystemDescription.DIMENSIONLESS» // in «a.modifierUnitCategory.baseUnit»«ENDIF»
+				«ENDIF»
+			«ENDFOR»
+			
+			// derived constants
+			«FOR a : invertibleEcosystemProperties»
+				static real «a.inverseName»;
+			«ENDFOR»
+			«FOR a : invertibleSpeciesProperties»
+				static real «a.inverseName»[nSpecies];
+			«ENDFOR»
+			// length = lengthFromWetMassCoefficient * wetMass^inverseLengthWeightParameter_b
+			static real lengthFromWetMassCoefficient[nSpecies];
+			
+			// false if the file is missing or does not match the compiled structure
+			static bool load(const char * fileName = SPRAT_PARAMETER_FILE) {
+				if(loaded) {
+					return true;
+				}
+				std::ifstream in(fileName);
+				std::string magic;
+				unsigned long long hash = 0;
+				if(!(in >> magic >> std::hex >> hash >> std::dec)
+					|| magic != "«RuntimeParameters.MAGIC»"
+					|| hash != structureHash
+				) {
+					return false;
+				}
+				
+				if(!(readValues(in, "t_max", &t_max, 1)
+					&& readValues(in, "delta_t", &delta_t, 1)
+					«FOR a : realValuedEcosystemProperties»
+						&& readValues(in, "«a.name.toFirstLower»", &«a.name.toFirstLower», 1)
+					«ENDFOR»
+					«FOR a : realValuedSpeciesProperties»
+						&& readValues(in, "«a.name.toFirstLower»", «a.name.toFirstLower», nSpecies)
+						«IF a.hasModifier»
+							&& readValues(in, "«a.name.toFirstLower»Modifier", «a.name.toFirstLower»Modifier, nSpecies)
+						«ENDIF»
+					«ENDFOR»
+				)) {
+					return false;
+				}
+				
+				«FOR a : invertibleEcosystemProperties»
+					«a.inverseName» = 1.0/«a.name.toFirstLower»;
 				«ENDFOR»
-			{}
+				for(uint s = 0; s < nSpecies; ++s) {
+					«FOR a : invertibleSpeciesProperties»
+						«a.inverseName»[s] = 1.0/«a.name.toFirstLower»[s];
+					«ENDFOR»
+					lengthFromWetMassCoefficient[s] = std::pow(lengthWeightParameter_a[s], -1.0/lengthWeightParameter_b[s]);
+				}
+				loaded = true;
+				return true;
+			}
+			
+		private:
+			static bool loaded;
+			
+			// reads "name v_0 ... v_n-1", skipping comment lines
+			static bool readValues(std::istream & in, const char * name, real * values, uint n) {
+				std::string token;
+				while(in >> token && token[0] == '#') {
+					in.ignore(std::numeric_limits<std::streamsize>::max(), '\n');
+				}
+				if(!in || token != name) {
+					return false;
+				}
+				for(uint i = 0; i < n; ++i) {
+					if(!(in >> values[i])) {
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+		
+		template <class Dummy> bool SpratParameterStorage<Dummy>::loaded = false;
+		template <class Dummy> real SpratParameterStorage<Dummy>::t_max;
+		template <class Dummy> real SpratParameterStorage<Dummy>::delta_t;
+		«FOR a : realValuedEcosystemProperties»
+			template <class Dummy> real SpratParameterStorage<Dummy>::«a.name.toFirstLower»;
+		«ENDFOR»
+		«FOR a : realValuedSpeciesProperties»
+			template <class Dummy> real SpratParameterStorage<Dummy>::«a.name.toFirstLower»[nSpecies];
+			«IF a.hasModifier»
+				template <class Dummy> real SpratParameterStorage<Dummy>::«a.name.toFirstLower»Modifier[nSpecies];
+			«ENDIF»
+		«ENDFOR»
+		«FOR a : invertibleEcosystemProperties»
+			template <class Dummy> real SpratParameterStorage<Dummy>::«a.inverseName»;
+		«ENDFOR»
+		«FOR a : invertibleSpeciesProperties»
+			template <class Dummy> real SpratParameterStorage<Dummy>::«a.inverseName»[nSpecies];
+		«ENDFOR»
+		template <class Dummy> real SpratParameterStorage<Dummy>::lengthFromWetMassCoefficient[nSpecies];
+		
+		
+		struct SpratModelParameters : public SpratParameterStorage<> {
+		};
+		
+		
+		// references into the loaded arrays
+		template <uint species>
+		struct SpratSpeciesParameters {
+			static_assert(species < SpratModelParameters::nSpecies, "species index out of range");
+			«FOR a : realValuedSpeciesProperties»
+				static real const& «a.name.toFirstLower»;
+				«IF a.hasModifier»
+					static real const& «a.name.toFirstLower»Modifier;
+				«ENDIF»
+			«ENDFOR»
+			«FOR a : invertibleSpeciesProperties»
+				static real const& «a.inverseName»;
+			«ENDFOR»
+			static real const& lengthFromWetMassCoefficient;
 		};
 		
+		«FOR a : realValuedSpeciesProperties»
+			template <uint species> real const& SpratSpeciesParameters<species>::«a.name.toFirstLower» = SpratModelParameters::«a.name.toFirstLower»[species];
+			«IF a.hasModifier»
+				template <uint species> real const& SpratSpeciesParameters<species>::«a.name.toFirstLower»Modifier = SpratModelParameters::«a.name.toFirstLower»Modifier[species];
+			«ENDIF»
+		«ENDFOR»
+		«FOR a : invertibleSpeciesProperties»
+			template <uint species> real const& SpratSpeciesParameters<species>::«a.inverseName» = SpratModelParameters::«a.inverseName»[species];
+		«ENDFOR»
+		template <uint species> real const& SpratSpeciesParameters<species>::lengthFromWetMassCoefficient = SpratModelParameters::lengthFromWetMassCoefficient[species];
+		
+		
+		// loads the parameter file during static initialization, before main
+		namespace {
+			struct SpratParameterFileLoader {
+				SpratParameterFileLoader() {
+					if(!SpratModelParameters::load()) {
+						std::cerr << "Parameter file '" << SPRAT_PARAMETER_FILE << "' is missing or does not match the compiled model structure" << std::endl;
+						std::abort();
+					}
+				}
+			} const spratParameterFileLoader;
+		}
+		
+		
+		// the masses are only known at run time, so every pair interacts on all nodes
+		«model.generateInteractionLists(model.allPredatorPreyPairs)»
+		
 		#endif /* MODEL_PARAMETERS_HPP_ */
 		
 		'''
 	}
 	
+	
+	/*
+	 * The pairs of species that can interact by predation and the nodes of r
+	 * on which they do, see PredationAnalyzer. The predation kernel visits
+	 * only these pairs instead of all nSpecies^2 of them at every DoF. The
+	 * interactions of a predator are contiguous, beginning at
+	 * firstInteraction[predator].
+	 */
+	def generateInteractionLists(EcosystemModel model, List<PredatorPreyInteraction> interactions) {
+		val nSpecies = model.nSpecies
+		val firstInteraction = (0 .. nSpecies).map[ p | interactions.filter[ it.predator < p ].size ].toList
+		
+		return '''
+		// the windows are inclusive node indices of r
+		struct SpratPredatorPreyInteraction {
+			uint predator;
+			uint prey;
+			uint predatorFirst, predatorLast; // the predators that can reach the prey
+			uint preyFirst, preyLast; // the prey that can be reached
+		};
+		
+		template <class Dummy = void>
+		struct SpratInteractionLists {
+			static constexpr uint nInteractions = «interactions.size»;
+			«IF interactions.empty»
+				// no pair can interact, the empty entry only avoids an array of size zero
+				static constexpr SpratPredatorPreyInteraction interactions[1] = {{0, 0, 1, 0, 1, 0}};
+			«ELSE»
+				static constexpr SpratPredatorPreyInteraction interactions[nInteractions] = {
+					«FOR i : interactions»
+						«i.format»,
+					«ENDFOR»
+				};
+			«ENDIF»
+			// the interactions of predator p are interactions[firstInteraction[p]] .. interactions[firstInteraction[p+1]-1]
+			static constexpr uint firstInteraction[«nSpecies + 1»] = {«FOR f : firstInteraction SEPARATOR ', '»«f»«ENDFOR»};
+		};
+		
+		template <class Dummy> constexpr SpratPredatorPreyInteraction SpratInteractionLists<Dummy>::interactions[];
+		template <class Dummy> constexpr uint SpratInteractionLists<Dummy>::firstInteraction[];
+		'''
+	}
+	
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.generator;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.diagnostics.Severity;
+import org.eclipse.xtext.generator.IGenerator;
+import org.eclipse.xtext.generator.JavaIoFileSystemAccess;
+import org.eclipse.xtext.nodemodel.INode;
+import org.eclipse.xtext.resource.XtextResource;
+import org.eclipse.xtext.util.CancelIndicator;
+import org.eclipse.xtext.validation.CheckMode;
+import org.eclipse.xtext.validation.IResourceValidator;
+import org.eclipse.xtext.validation.Issue;
+import org.sprat.ecosystem.EcosystemStandaloneSetup;
+import org.sprat.ecosystem.helper.Instrumentation;
+import org.sprat.ecosystem.validation.ValidationCacheAdapter;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Provider;
+
+/**
+ * Standalone generator for batch runs outside of Eclipse:
+ *
+ *   Main [--instrument] [--cache <directory>] [--low-memory] [-o <output directory>] <model> [<library> ...]
+ *
+ * The libraries the model imports are loaded into the same resource set.
+ * With --instrument, the timings of the validation checks and templates are
+ * printed as JSON to stderr, see {@link Instrumentation}. With --cache,
+ * unchanged files are loaded from the given directory instead of being
+ * parsed and validated again, see {@link ModelCache}. With --low-memory,
+ * the node models are released after validation and only the semantic
+ * models are kept for the generation; the peak heap is printed to stderr
+ * with this option and with --instrument.
+ */
+public class Main {
+	public static final String DEFAULT_OUTPUT_PATH = "src-gen/";
+
+	public static void main(String[] args) {
+		String outputPath = DEFAULT_OUTPUT_PATH;
+		String cachePath = null;
+		boolean lowMemory = false;
+		final List<String> files = new ArrayList<>();
+		for(int i = 0; i < args.length; ++i) {
+			if("--instrument".equals(args[i])) {
+				Instrumentation.getInstance().setEnabled(true);
+			} else if("--cache".equals(args[i]) && i + 1 < args.length) {
+				cachePath = args[++i];
+			} else if("--low-memory".equals(args[i])) {
+				lowMemory = true;
+			} else if("-o".equals(args[i]) && i + 1 < args.length) {
+				outputPath = args[++i];
+			} else {
+				files.add(args[i]);
+			}
+		}
+		if(files.isEmpty()) {
+			System.err.println("Usage: Main [--instrument] [--cache <directory>] [--low-memory] [-o <output directory>] <model> [<library> ...]");
+			System.exit(2);
+		}
+		
+		final Injector injector = new EcosystemStandaloneSetup().createInjectorAndDoEMFRegistration();
+		final Main main = injector.getInstance(Main.class);
+		if(cachePath != null) {
+			main.modelCache.setDirectory(Paths.get(cachePath));
+		}
+		main.lowMemory = lowMemory;
+		final boolean success;
+		try {
+			success = main.runGenerator(files, outputPath);
+		} catch(IOException ex) {
+			System.err.println(ex);
+			System.exit(2);
+			return;
+		}
+		if(Instrumentation.isOn()) {
+			System.err.print(Instrumentation.getInstance().getSummaryJson());
+		}
+		System.exit(success ? 0 : 1);
+	}
+
+	@Inject
+	private Provider<ResourceSet> resourceSetProvider;
+
+	@Inject
+	private IResourceValidator validator;
+
+	@Inject
+	private IGenerator generator;
+
+	@Inject
+	private JavaIoFileSystemAccess fileAccess;
+
+	@Inject
+	private ModelCache modelCache;
+
+	private boolean lowMemory;
+
+	protected boolean runGenerator(List<String> files, String outputPath) throws IOException {
+		Instrumentation.resetPeakHeap();
+		final ResourceSet set = resourceSetProvider.get();
+		Resource resource = null;
+		for(String file : files) {
+			final Resource loaded = modelCache.getResource(set, URI.createFileURI(file));
+			if(resource == null) {
+				resource = loaded;
+			}
+		}
+		EcoreUtil.resolveAll(set);
+		modelCache.prime();
+
+		if(modelCache.isCached(resource)) {
+			// validated without errors when it was cached
+			for(String issue : modelCache.getIssues(resource)) {
+				System.err.println(issue);
+			}
+		} else {
+			final Instrumentation.Timer timer = Instrumentation.start("validate", resource.getURI().lastSegment());
+			final List<Issue> issues;
+			try {
+				issues = validator.validate(resource, CheckMode.ALL, CancelIndicator.NullImpl);
+			} finally {
+				timer.stop();
+			}
+			boolean hasErrors = false;
+			for(Issue issue : issues) {
+				System.err.println(issue);
+				hasErrors |= (issue.getSeverity() == Severity.ERROR);
+			}
+			modelCache.store(resource, issues);
+			if(hasErrors) {
+				return false;
+			}
+		}
+
+		if(lowMemory) {
+			modelCache.clear();
+			resource = releaseNodeModels(set, resource);
+		}
+
+		fileAccess.setOutputPath(outputPath);
+		generator.doGenerate(resource, fileAccess);
+		System.out.println("Code generation finished.");
+		if(lowMemory || Instrumentation.isOn()) {
+			System.err.println("Peak heap for " + resource.getURI().lastSegment() + ": "
+				+ (Instrumentation.getPeakHeapBytes() >> 20) + " MB");
+		}
+		return true;
+	}
+
+	/**
+	 * Moves the semantic models of the Xtext resources into plain resources
+	 * and removes the nodes and the cached validation diagnostics adapted to
+	 * their objects, so the node models, parse results and diagnostics become
+	 * garbage. The cross-references are already resolved and stay intact.
+	 * Returns the replacement of the given resource.
+	 */
+	static Resource releaseNodeModels(ResourceSet set, Resource resource) {
+		Resource replacement = resource;
+		final EList<Resource> resources = set.getResources();
+		for(int i = 0; i < resources.size(); ++i) {
+			if(!(resources.get(i) instanceof XtextResource)) {
+				continue;
+			}
+			final Resource xtextResource = resources.get(i);
+			for(Iterator<EObject> it = xtextResource.getAllContents(); it.hasNext(); ) {
+				final Iterator<Adapter> adapters = it.next().eAdapters().iterator();
+				while(adapters.hasNext()) {
+					final Adapter adapter = adapters.next();
+					if(adapter instanceof INode || adapter instanceof ValidationCacheAdapter) {
+						adapters.remove();
+					}
+				}
+			}
+			final Resource plain = new ResourceImpl(xtextResource.getURI());
+			plain.getContents().addAll(new ArrayList<>(xtextResource.getContents()));
+			resources.set(i, plain);
+			if(xtextResource == resource) {
+				replacement = plain;
+			}
+		}
+		return replacement;
+	}
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.diagnostics.Severity;
+import org.eclipse.xtext.util.IResourceScopeCache;
+import org.eclipse.xtext.validation.Issue;
+import org.sprat.ecosystem.ecosystem.EcosystemModel;
+import org.sprat.ecosystem.ecosystem.EcosystemPackage;
+import org.sprat.ecosystem.ecosystem.Entity;
+import org.sprat.ecosystem.ecosystem.PropertyAttribute;
+import org.sprat.ecosystem.ecosystem.RecordAttribute;
+import org.sprat.ecosystem.helper.ForcingFile;
+import org.sprat.ecosystem.helper.ForcingHelper;
+import org.sprat.ecosystem.helper.GeneratorHelper;
+import org.sprat.ecosystem.helper.Instrumentation;
+import org.sprat.ecosystem.helper.ModelHelper;
+import org.sprat.ecosystem.services.EcosystemGrammarAccess;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+/**
+ * On-disk cache of parsed and linked models for batch runs, see {@link Main}.
+ *
+ * An entry is keyed by the SHA-256 of the grammar version, the file URI and
+ * the file content. It holds the model in EMF binary resource form together
+ * with the content hashes of the files it depends on (size and date for
+ * forcing files), the validation issues and the derived data the generator
+ * would otherwise compute again (property values, species index and record
+ * dimensionalities). Entries with a
+ * different grammar or format version, changed dependencies, a bad checksum
+ * or an unreadable model are deleted and the file is parsed again.
+ *
+ * Only models without errors are stored. The validation result of the model
+ * that is generated depends on all other files loaded with it; the entries
+ * of libraries only depend on the files they refer to.
+ */
+public class ModelCache {
+	static final String MAGIC = "sprat-model-cache";
+	static final int FORMAT_VERSION = 1;
+	static final String STAMP = "stamp ";
+
+	static class Entry {
+		final String key;
+		final Map<String, String> dependencies = new LinkedHashMap<>();
+		final List<String> issues = new ArrayList<>();
+		final Map<String, Double> propertyValues = new LinkedHashMap<>();
+		final Map<String, Integer> recordDimensionalities = new LinkedHashMap<>();
+		final List<String> species = new ArrayList<>();
+		boolean loaded;
+
+		Entry(String key) {
+			this.key = key;
+		}
+	}
+
+	@Inject
+	private IResourceScopeCache cache;
+
+	@Inject
+	private ModelHelper modelHelper;
+
+	@Inject
+	private GeneratorHelper generatorHelper;
+
+	@Inject
+	private ForcingHelper forcingHelper;
+
+	@Inject
+	private EcosystemGrammarAccess grammarAccess;
+
+	private Path directory;
+	private String grammarVersion;
+	private final Map<Resource, Entry> entries = new IdentityHashMap<>();
+
+	public void setDirectory(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Loads a file into the resource set, from the cache if there is a valid
+	 * entry for its current content and by parsing it otherwise.
+	 */
+	public Resource getResource(ResourceSet set, URI uri) throws IOException {
+		final byte[] content = Files.readAllBytes(new File(uri.toFileString()).toPath());
+		final Entry entry = new Entry(directory != null ? getKey(uri, content) : null);
+
+		final Resource cached = load(set, uri, entry);
+		if(cached != null) {
+			Instrumentation.count("modelCacheHit");
+			entries.put(cached, entry);
+			return cached;
+		}
+		if(directory != null) {
+			Instrumentation.count("modelCacheMiss");
+		}
+		final Resource resource = set.createResource(uri);
+		resource.load(new ByteArrayInputStream(content), set.getLoadOptions());
+		entries.put(resource, entry);
+		return resource;
+	}
+
+	public boolean isCached(Resource resource) {
+		final Entry entry = entries.get(resource);
+		return entry != null && entry.loaded;
+	}
+
+	// forgets the resources of this run, after they are stored
+	public void clear() {
+		entries.clear();
+	}
+
+	public List<String> getIssues(Resource resource) {
+		final Entry entry = entries.get(resource);
+		return entry != null ? entry.issues : Collections.<String>emptyList();
+	}
+
+	/**
+	 * Hands the derived data of the cached resources to the helpers. The
+	 * resources the entries refer to must be loaded by then.
+	 */
+	public void prime() {
+		for(Map.Entry<Resource, Entry> e : entries.entrySet()) {
+			if(e.getValue().loaded) {
+				prime(e.getKey(), e.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Stores the resources that were parsed in this run; the issues are the
+	 * validation result of the given resource.
+	 */
+	public void store(Resource validated, List<Issue> issues) {
+		for(Map.Entry<Resource, Entry> e : entries.entrySet()) {
+			final Resource resource = e.getKey();
+			final Entry entry = e.getValue();
+			if(entry.loaded || !resource.getErrors().isEmpty() || resource.getContents().isEmpty()) {
+				continue;
+			}
+			if(resource == validated) {
+				boolean hasErrors = false;
+				for(Issue issue : issues) {
+					entry.issues.add(issue.toString());
+					hasErrors |= (issue.getSeverity() == Severity.ERROR);
+				}
+				if(hasErrors) {
+					continue;
+				}
+			}
+			try {
+				store(resource, entry, resource == validated);
+			} catch(IOException | RuntimeException ex) {
+				System.err.println("Could not cache " + resource.getURI().lastSegment() + ": " + ex);
+			}
+		}
+	}
+
+
+	Resource load(ResourceSet set, URI uri, Entry entry) {
+		if(directory == null) {
+			return null;
+		}
+		final Path file = directory.resolve(entry.key + ".bin");
+		if(!Files.isRegularFile(file)) {
+			return null;
+		}
+		Resource resource = null;
+		try {
+			final byte[] bytes = Files.readAllBytes(file);
+			final DataInputStream in = new DataInputStream(new ByteArrayInputStream(checked(bytes)));
+			if(!MAGIC.equals(in.readUTF()) || in.readInt() != FORMAT_VERSION || !entry.key.equals(in.readUTF())) {
+				throw new IOException("stale entry");
+			}
+			for(int n = in.readInt(); n > 0; --n) {
+				entry.dependencies.put(in.readUTF(), in.readUTF());
+			}
+			for(Map.Entry<String, String> dependency : entry.dependencies.entrySet()) {
+				if(!dependency.getValue().equals(getDependencyHash(dependency.getKey(), dependency.getValue()))) {
+					throw new IOException("changed dependency");
+				}
+			}
+			for(int n = in.readInt(); n > 0; --n) {
+				entry.issues.add(readString(in));
+			}
+			for(int n = in.readInt(); n > 0; --n) {
+				entry.propertyValues.put(in.readUTF(), in.readDouble());
+			}
+			for(int n = in.readInt(); n > 0; --n) {
+				entry.recordDimensionalities.put(in.readUTF(), in.readInt());
+			}
+			for(int n = in.readInt(); n > 0; --n) {
+				entry.species.add(in.readUTF());
+			}
+
+			resource = new BinaryResourceImpl(uri);
+			set.getResources().add(resource);
+			final BinaryResourceImpl.EObjectInputStream model = new BinaryResourceImpl.EObjectInputStream(in, Collections.emptyMap());
+			model.loadResource(resource);
+			if(!(resource.getContents().get(0) instanceof EcosystemModel)) {
+				throw new IOException("not a model");
+			}
+			entry.loaded = true;
+			return resource;
+		} catch(IOException | RuntimeException ex) {
+			// stale or corrupt, rebuilt from the source
+			if(resource != null) {
+				set.getResources().remove(resource);
+			}
+			entry.dependencies.clear();
+			entry.issues.clear();
+			entry.propertyValues.clear();
+			entry.recordDimensionalities.clear();
+			entry.species.clear();
+			try {
+				Files.deleteIfExists(file);
+			} catch(IOException ignored) {
+			}
+			Instrumentation.count("modelCacheStale");
+			return null;
+		}
+	}
+
+	void prime(final Resource resource, final Entry entry) {
+		cache.get(GeneratorHelper.PROPERTY_VALUES, resource, new Provider<Map<PropertyAttribute, Double>>() {
+			@Override
+			public Map<PropertyAttribute, Double> get() {
+				final Map<PropertyAttribute, Double> map = new HashMap<>();
+				for(Map.Entry<String, Double> e : entry.propertyValues.entrySet()) {
+					map.put((PropertyAttribute) resource.getEObject(e.getKey()), e.getValue());
+				}
+				return map;
+			}
+		});
+		final EcosystemModel model = (EcosystemModel) resource.getContents().get(0);
+		if(!entry.recordDimensionalities.isEmpty()) {
+			cache.get(GeneratorHelper.RECORD_DIMENSIONALITIES, resource, new Provider<Map<RecordAttribute, Integer>>() {
+				@Override
+				public Map<RecordAttribute, Integer> get() {
+					final Map<RecordAttribute, Integer> map = new HashMap<>();
+					for(Map.Entry<String, Integer> e : entry.recordDimensionalities.entrySet()) {
+						map.put((RecordAttribute) resource.getEObject(e.getKey()), e.getValue());
+					}
+					return map;
+				}
+			});
+		}
+		if(!entry.species.isEmpty()) {
+			cache.get(ModelHelper.SPECIES_INDEX, resource, new Provider<Map<Entity, Integer>>() {
+				@Override
+				public Map<Entity, Integer> get() {
+					final Map<Entity, Integer> map = new HashMap<>();
+					for(int i = 0; i < entry.species.size(); ++i) {
+						map.put((Entity) model.eResource().getResourceSet().getEObject(URI.createURI(entry.species.get(i)), true), i);
+					}
+					return map;
+				}
+			});
+		}
+	}
+
+	void store(Resource resource, Entry entry, boolean dependsOnAll) throws IOException {
+		if(directory == null) {
+			return;
+		}
+		final EcosystemModel model = (EcosystemModel) resource.getContents().get(0);
+		final List<Resource> dependencies = new ArrayList<>();
+		if(dependsOnAll) {
+			dependencies.addAll(resource.getResourceSet().getResources());
+		} else {
+			for(Iterator<EObject> it = resource.getAllContents(); it.hasNext(); ) {
+				for(EObject target : it.next().eCrossReferences()) {
+					if(!dependencies.contains(target.eResource())) {
+						dependencies.add(target.eResource());
+					}
+				}
+			}
+		}
+		for(Resource dependency : dependencies) {
+			if(dependency != null && dependency != resource) {
+				if(!dependency.getURI().isFile()) {
+					return;
+				}
+				entry.dependencies.put(dependency.getURI().toString(), getContentHash(dependency.getURI()));
+			}
+		}
+		if(dependsOnAll) {
+			// forcing files are only compared by size and date, they can be huge
+			for(String name : ForcingHelper.FORCINGS) {
+				final PropertyAttribute forcing = forcingHelper.getForcing(model, name);
+				final File file = forcing != null ? forcingHelper.getForcingFile(forcing) : null;
+				if(file != null) {
+					entry.dependencies.put(URI.createFileURI(file.getAbsolutePath()).toString(), STAMP + ForcingFile.getStamp(file));
+				}
+			}
+		}
+		for(Map.Entry<PropertyAttribute, Double> e : generatorHelper.getPropertyValues(resource).entrySet()) {
+			entry.propertyValues.put(resource.getURIFragment(e.getKey()), e.getValue());
+		}
+		if(!modelHelper.isLibrary(model)) {
+			for(Map.Entry<RecordAttribute, Integer> e : generatorHelper.getRecordDimensionalities(model).entrySet()) {
+				if(e.getValue() != null) {
+					entry.recordDimensionalities.put(resource.getURIFragment(e.getKey()), e.getValue());
+				}
+			}
+		}
+		for(Entity species : modelHelper.getSpecies(model)) {
+			entry.species.add(EcoreUtil.getURI(species).toString());
+		}
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeUTF(entry.key);
+		out.writeInt(entry.dependencies.size());
+		for(Map.Entry<String, String> e : entry.dependencies.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeUTF(e.getValue());
+		}
+		out.writeInt(entry.issues.size());
+		for(String issue : entry.issues) {
+			writeString(out, issue);
+		}
+		out.writeInt(entry.propertyValues.size());
+		for(Map.Entry<String, Double> e : entry.propertyValues.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeDouble(e.getValue());
+		}
+		out.writeInt(entry.recordDimensionalities.size());
+		for(Map.Entry<String, Integer> e : entry.recordDimensionalities.entrySet()) {
+			out.writeUTF(e.getKey());
+			out.writeInt(e.getValue());
+		}
+		out.writeInt(entry.species.size());
+		for(String species : entry.species) {
+			out.writeUTF(species);
+		}
+		final BinaryResourceImpl.EObjectOutputStream modelOut = new BinaryResourceImpl.EObjectOutputStream(out, Collections.emptyMap());
+		modelOut.saveResource(resource);
+		modelOut.flush();
+		final CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+
+		// written next to the entry and moved, so readers never see a partial entry
+		Files.createDirectories(directory);
+		final Path temporary = Files.createTempFile(directory, entry.key, ".tmp");
+		try {
+			Files.write(temporary, bytes.toByteArray());
+			Files.move(temporary, directory.resolve(entry.key + ".bin"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+
+	String getKey(URI uri, byte[] content) {
+		final MessageDigest digest = newDigest();
+		digest.update(getGrammarVersion().getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(uri.toString().getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(content);
+		return toHex(digest.digest());
+	}
+
+	String getDependencyHash(String uri, String stored) throws IOException {
+		if(stored.startsWith(STAMP)) {
+			return STAMP + ForcingFile.getStamp(new File(URI.createURI(uri).toFileString()));
+		}
+		return getContentHash(URI.createURI(uri));
+	}
+
+	String getContentHash(URI uri) throws IOException {
+		final File file = new File(uri.toFileString());
+		if(!file.isFile()) {
+			return "";
+		}
+		return toHex(newDigest().digest(Files.readAllBytes(file.toPath())));
+	}
+
+	// a digest of the grammar and the metamodel, changes with any edit to either
+	String getGrammarVersion() {
+		if(grammarVersion == null) {
+			final MessageDigest digest = newDigest();
+			digest.update(Integer.toString(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+			update(digest, grammarAccess.getGrammar());
+			update(digest, EcosystemPackage.eINSTANCE);
+			grammarVersion = toHex(digest.digest());
+		}
+		return grammarVersion;
+	}
+
+	static void update(MessageDigest digest, EObject root) {
+		final List<EObject> objects = new ArrayList<>();
+		objects.add(root);
+		for(Iterator<EObject> it = root.eAllContents(); it.hasNext(); ) {
+			objects.add(it.next());
+		}
+		for(EObject object : objects) {
+			final StringBuilder s = new StringBuilder(object.eClass().getName());
+			for(EAttribute attribute : object.eClass().getEAllAttributes()) {
+				if(!attribute.isDerived() && !attribute.isTransient()) {
+					s.append('\t').append(attribute.getName()).append('=').append(object.eGet(attribute));
+				}
+			}
+			s.append('\n');
+			digest.update(s.toString().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	static byte[] checked(byte[] bytes) throws IOException {
+		if(bytes.length < 8) {
+			throw new IOException("truncated entry");
+		}
+		final CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 8);
+		final long stored = new DataInputStream(new ByteArrayInputStream(bytes, bytes.length - 8, 8)).readLong();
+		if(crc.getValue() != stored) {
+			throw new IOException("checksum mismatch");
+		}
+		final byte[] payload = new byte[bytes.length - 8];
+		System.arraycopy(bytes, 0, payload, 0, payload.length);
+		return payload;
+	}
+
+	static void writeString(DataOutputStream out, String s) throws IOException {
+		final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	static String toHex(byte[] bytes) {
+		final StringBuilder s = new StringBuilder(2 * bytes.length);
+		for(byte b : bytes) {
+			s.append(String.format("%02x", b & 0xff));
+		}
+		return s.toString();
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.eclipse.xtext.xbase.lib.Functions.Function1;
+
+/**
+ * Renders independent parts of the generated code on a fork-join pool and
+ * returns the results in the order of the inputs, so the output does not
+ * depend on the scheduling. The functions must only read the model; see
+ * EcosystemGenerator.prepareForParallelGeneration.
+ *
+ * The pool size defaults to the number of processors and can be set with
+ * -Dsprat.generation.parallelism=n.
+ */
+public class ParallelGeneration {
+	public static final String PARALLELISM_PROPERTY = "sprat.generation.parallelism";
+
+	static final ForkJoinPool POOL = new ForkJoinPool(
+		Math.max(1, Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()))
+	);
+
+	static class Part<S, T> extends RecursiveTask<T> {
+		private static final long serialVersionUID = 1L;
+
+		final S item;
+		final Function1<? super S, ? extends T> function;
+
+		Part(S item, Function1<? super S, ? extends T> function) {
+			this.item = item;
+			this.function = function;
+		}
+
+		@Override
+		protected T compute() {
+			return function.apply(item);
+		}
+	}
+
+	static class All<S, T> extends RecursiveTask<List<T>> {
+		private static final long serialVersionUID = 1L;
+
+		final List<S> items;
+		final Function1<? super S, ? extends T> function;
+
+		All(List<S> items, Function1<? super S, ? extends T> function) {
+			this.items = items;
+			this.function = function;
+		}
+
+		@Override
+		protected List<T> compute() {
+			final List<Part<S, T>> parts = new ArrayList<>(items.size());
+			for(S item : items) {
+				parts.add(new Part<S, T>(item, function));
+			}
+			invokeAll(parts);
+			final List<T> results = new ArrayList<>(items.size());
+			for(Part<S, T> part : parts) {
+				results.add(part.join());
+			}
+			return results;
+		}
+	}
+
+	// also safe to call from within a part, then the parts are forked on the same pool
+	public static <S, T> List<T> map(List<S> items, Function1<? super S, ? extends T> function) {
+		if(items.size() <= 1) {
+			final List<T> results = new ArrayList<>(items.size());
+			for(S item : items) {
+				results.add(function.apply(item));
+			}
+			return results;
+		}
+		return POOL.invoke(new All<S, T>(items, function));
+	}
+}
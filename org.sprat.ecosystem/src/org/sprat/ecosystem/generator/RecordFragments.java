@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.generator;
+
+/**
+ * The parts of a record that recorder_setup.hpp needs, rendered once per
+ * record, see EcosystemGenerator.generateRecorders.
+ */
+public class RecordFragments {
+	final String expression;
+	final Integer dimensionality;
+	final String modifier;
+	final String modifierWithInterval;
+	
+	public RecordFragments(String expression, Integer dimensionality, String modifier, String modifierWithInterval) {
+		this.expression = expression;
+		this.dimensionality = dimensionality;
+		this.modifier = modifier;
+		this.modifierWithInterval = modifierWithInterval;
+	}
+	
+	public String getExpression() {
+		return expression;
+	}
+	public Integer getDimensionality() {
+		return dimensionality;
+	}
+	public String getModifier() {
+		return modifier;
+	}
+	public String getModifierWithInterval() {
+		return modifierWithInterval;
+	}
+}
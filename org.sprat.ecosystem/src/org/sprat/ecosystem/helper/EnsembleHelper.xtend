@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper
+
+import com.google.inject.Inject
+import org.sprat.ecosystem.ecosystem.EcosystemModel
+import org.sprat.ecosystem.ecosystem.EnsembleMember
+import org.sprat.ecosystem.ecosystem.Entity
+import org.sprat.ecosystem.ecosystem.EntityType
+import org.sprat.ecosystem.ecosystem.ParameterOverride
+
+/**
+ * Members of the Ensemble entity. Every member runs the model with some of
+ * the real-valued ecosystem or species properties overridden; everything
+ * else, including mesh, time step and initial data, is shared.
+ */
+class EnsembleHelper {
+
+	@Inject extension ExpressionHelper
+	@Inject extension GeneratorHelper
+
+	def getEnsembleMembers(EcosystemModel model) {
+		model.entities.filter[ it.type == EntityType.ENSEMBLE ].map[ it.attributes.filter(typeof(EnsembleMember)) ].flatten.toList
+	}
+
+	def boolean hasEnsemble(EcosystemModel model) {
+		!model.ensembleMembers.empty
+	}
+
+	// the overridden property, null if there is none
+	def SpratAttribute getOverriddenAttribute(ParameterOverride o) {
+		val properties = if(o.species != null) realValuedSpeciesProperties else realValuedEcosystemProperties
+		return properties.findFirst[ it.name.equals(o.name) ]
+	}
+
+	def ParameterOverride findOverride(EnsembleMember member, Entity species, String name) {
+		member.overrides.findFirst[ it.species == species && name.equals(it.name) ]
+	}
+
+	def double getMemberSpeciesPropertyValue(EnsembleMember member, Entity species, String name) {
+		val o = member.findOverride(species, name)
+		if(o != null) {
+			return o.value.eval
+		}
+		return species.getSpeciesPropertyValue(name)
+	}
+
+	def double getMemberEcosystemPropertyValue(EnsembleMember member, EcosystemModel model, String name) {
+		val o = member.findOverride(null, name)
+		if(o != null) {
+			return o.value.eval
+		}
+		return model.getEcosystemAttributeValue(name)
+	}
+
+	// inverts wetMass = a * length^b for the member
+	def double getMemberLengthFromWetMassCoefficient(EnsembleMember member, Entity species) {
+		Math.pow(member.getMemberSpeciesPropertyValue(species, "lengthWeightParameter_a"),
+			-1.0/member.getMemberSpeciesPropertyValue(species, "lengthWeightParameter_b"))
+	}
+}
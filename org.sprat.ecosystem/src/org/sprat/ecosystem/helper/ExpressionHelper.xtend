@@ -17,16 +17,21 @@
 package org.sprat.ecosystem.helper
 
 import com.google.inject.Inject
+import com.google.inject.Provider
 import org.sprat.ecosystem.EcosystemDescription
-import org.sprat.ecosystem.ecosystem.BinaryArithmeticExpressionNode
+import java.util.List
 import org.sprat.ecosystem.ecosystem.BinaryBooleanExpressionNode
+import org.sprat.ecosystem.ecosystem.Expression
 import org.sprat.ecosystem.ecosystem.Identifier
 import org.sprat.ecosystem.ecosystem.IntegerLiteral
+import org.sprat.ecosystem.ecosystem.LogicalExpressionNode
 import org.sprat.ecosystem.ecosystem.MathFunction
+import org.sprat.ecosystem.ecosystem.ProductExpressionNode
 import org.sprat.ecosystem.ecosystem.RangeExpressionNode
 import org.sprat.ecosystem.ecosystem.RealLiteral
 import org.sprat.ecosystem.ecosystem.RecordFunction
 import org.sprat.ecosystem.ecosystem.RecordFunctionArgument
+import org.sprat.ecosystem.ecosystem.SumExpressionNode
 import org.sprat.ecosystem.ecosystem.TernaryConditionalExpressionNode
 import org.sprat.ecosystem.ecosystem.UnaryArithmeticExpressionNode
 import org.sprat.ecosystem.ecosystem.UnaryBooleanExpressionNode
@@ -35,10 +40,12 @@ import org.sprat.ecosystem.ecosystem.UnitExpressionNode
 class ExpressionHelper {
 	/*
 	TernaryConditionalExpressionNode
+	LogicalExpressionNode
 	BinaryBooleanExpressionNode
 	RangeExpressionNode
 	UnitExpressionNode
-	BinaryArithmeticExpressionNode
+	SumExpressionNode
+	ProductExpressionNode
 	UnaryBooleanExpressionNode
 	UnaryArithmeticExpressionNode
 	MathFunction
@@ -50,6 +57,8 @@ class ExpressionHelper {
 	*/
 	
 	@Inject extension ModelHelper
+	// the generator helper depends on this class
+	@Inject Provider<GeneratorHelper> generatorHelper
 	
 	
 	def dispatch String format(RangeExpressionNode expr) {
@@ -72,14 +81,20 @@ class ExpressionHelper {
 			FormattingHelper.parenthize(expr.ifTrue.format) + " : " + 
 			FormattingHelper.parenthize(expr.ifFalse.format)
 	}
+	def dispatch String format(LogicalExpressionNode expr) {
+		return formatChain(expr.operands, expr.ops)
+	}
 	def dispatch String format(BinaryBooleanExpressionNode expr) {
 		return FormattingHelper.parenthize(expr.left.format + " " + expr.op + " " + expr.right.format)
 	}
 	def dispatch String format(UnitExpressionNode expr) {
 		return EcosystemDescription.formatConversionToBaseUnit(expr.unit, expr.child.format)
 	}
-	def dispatch String format(BinaryArithmeticExpressionNode expr) {
-		return FormattingHelper.parenthize(expr.left.format + " " + expr.op + " " + expr.right.format)
+	def dispatch String format(SumExpressionNode expr) {
+		return formatChain(expr.operands, expr.ops)
+	}
+	def dispatch String format(ProductExpressionNode expr) {
+		return formatChain(expr.operands, expr.ops)
 	}
 	def dispatch String format(UnaryBooleanExpressionNode expr) {
 		return expr.op + format(expr.child)
@@ -99,11 +114,32 @@ class ExpressionHelper {
 		return result;
 	}
 	def dispatch String format(RecordFunctionArgument expr) {
-		if(expr.argument instanceof Identifier) {
-			return Integer.toString((expr.argument as Identifier).name.getSpeciesIndex(expr.rootNode))
+		if(expr.species != null) {
+			return Integer.toString(expr.species.getSpeciesIndex(expr.rootNode))
+		}
+		if(expr.isMassRange) {
+			return expr.resolveMassSlab.format
 		}
 		return expr.argument.format
 	}
+	
+	// mass ranges of record functions are resolved to r nodes of the mesh
+	def boolean isMassRange(RecordFunctionArgument expr) {
+		'mass'.equals(expr.name)
+			&& expr.argument instanceof RangeExpressionNode
+			&& expr.eContainer instanceof RecordFunction
+			&& EcosystemDescription.RECORD_FUNCTIONS.contains((expr.eContainer as RecordFunction).name)
+	}
+	def MassSlab resolveMassSlab(RecordFunctionArgument expr) {
+		val range = expr.argument as RangeExpressionNode
+		val mesh = generatorHelper.get.getMeshFunction(expr.rootNode)
+		val rDim = generatorHelper.get.getMeshDimension(mesh) - 1
+		return MassSlab.resolve(
+			if(range.from != null) range.from.eval else -1.0,
+			if(range.to != null) range.to.eval else -1.0,
+			generatorHelper.get.getMeshSpacing(rDim, mesh)
+		)
+	}
 	def dispatch String format(IntegerLiteral expr) {
 		return FormattingHelper.formatDouble(expr.value as double)
 	}
@@ -117,6 +153,18 @@ class ExpressionHelper {
 		return ""
 	}
 	
+	/*
+	 * All operators of a chain share one precedence level and are left-associative
+	 * in C++ as well, so the chain is emitted flat and keeps its evaluation order.
+	 */
+	def String formatChain(List<Expression> operands, List<String> ops) {
+		val result = new StringBuilder(operands.head.format)
+		for(i : 1 ..< operands.length) {
+			result.append(" ").append(ops.get(i-1)).append(" ").append(operands.get(i).format)
+		}
+		return FormattingHelper.parenthize(result.toString)
+	}
+	
 	
 	
 	
@@ -127,22 +175,20 @@ class ExpressionHelper {
 	def dispatch double eval(TernaryConditionalExpressionNode expr) {
 		0.0
 	}
+	def dispatch double eval(LogicalExpressionNode expr) {
+		0.0
+	}
 	def dispatch double eval(BinaryBooleanExpressionNode expr) {
 		0.0
 	}
 	def dispatch double eval(UnitExpressionNode expr) {
 		EcosystemDescription.convertToBaseUnit(expr.unit, expr.child.eval)
 	}
-	def dispatch double eval(BinaryArithmeticExpressionNode expr) {
-		val left = expr.left.eval
-		val right = expr.right.eval
-		return switch(expr.op) {
-			case "+": left + right
-			case "-": left - right
-			case "*": left * right
-			case "/": left / right
-			default: 0.0
-		}
+	def dispatch double eval(SumExpressionNode expr) {
+		evalChain(expr.operands, expr.ops)
+	}
+	def dispatch double eval(ProductExpressionNode expr) {
+		evalChain(expr.operands, expr.ops)
 	}
 	def dispatch double eval(UnaryBooleanExpressionNode expr) {
 		0.0
@@ -181,6 +227,229 @@ class ExpressionHelper {
 		0.0
 	}
 	
+	def double evalChain(List<Expression> operands, List<String> ops) {
+		var result = operands.head.eval
+		for(i : 1 ..< operands.length) {
+			result = applyArithmeticOp(ops.get(i-1), result, operands.get(i).eval)
+		}
+		return result
+	}
+	
+	def double applyArithmeticOp(String op, double left, double right) {
+		switch(op) {
+			case "+": left + right
+			case "-": left - right
+			case "*": left * right
+			case "/": left / right
+			default: 0.0
+		}
+	}
+	
+	
+	
+	
+	
+	/*
+	 * Evaluation of variable math expressions. The values of the variables are
+	 * given in the order of EcosystemDescription.MATH_VARIABLES; booleans are
+	 * 1.0 and 0.0 as in the generated C++ code.
+	 */
+	def dispatch double evalAt(RangeExpressionNode expr, double[] variables) {
+		0.0
+	}
+	def dispatch double evalAt(TernaryConditionalExpressionNode expr, double[] variables) {
+		if(expr.condition.evalAt(variables) != 0.0) {
+			expr.ifTrue.evalAt(variables)
+		} else {
+			expr.ifFalse.evalAt(variables)
+		}
+	}
+	def dispatch double evalAt(LogicalExpressionNode expr, double[] variables) {
+		var result = (expr.operands.head.evalAt(variables) != 0.0)
+		for(i : 1 ..< expr.operands.length) {
+			if("&&".equals(expr.ops.get(i-1))) {
+				result = result && (expr.operands.get(i).evalAt(variables) != 0.0)
+			} else {
+				result = result || (expr.operands.get(i).evalAt(variables) != 0.0)
+			}
+		}
+		return if(result) 1.0 else 0.0
+	}
+	def dispatch double evalAt(BinaryBooleanExpressionNode expr, double[] variables) {
+		val left = expr.left.evalAt(variables)
+		val right = expr.right.evalAt(variables)
+		val result = switch(expr.op) {
+			case "==": left == right
+			case "!=": left != right
+			case "<": left < right
+			case ">": left > right
+			case "<=": left <= right
+			case ">=": left >= right
+			default: false
+		}
+		return if(result) 1.0 else 0.0
+	}
+	def dispatch double evalAt(UnitExpressionNode expr, double[] variables) {
+		EcosystemDescription.convertToBaseUnit(expr.unit, expr.child.evalAt(variables))
+	}
+	def dispatch double evalAt(SumExpressionNode expr, double[] variables) {
+		var result = expr.operands.head.evalAt(variables)
+		for(i : 1 ..< expr.operands.length) {
+			result = applyArithmeticOp(expr.ops.get(i-1), result, expr.operands.get(i).evalAt(variables))
+		}
+		return result
+	}
+	def dispatch double evalAt(ProductExpressionNode expr, double[] variables) {
+		var result = expr.operands.head.evalAt(variables)
+		for(i : 1 ..< expr.operands.length) {
+			result = applyArithmeticOp(expr.ops.get(i-1), result, expr.operands.get(i).evalAt(variables))
+		}
+		return result
+	}
+	def dispatch double evalAt(UnaryBooleanExpressionNode expr, double[] variables) {
+		if(expr.child.evalAt(variables) != 0.0) 0.0 else 1.0
+	}
+	def dispatch double evalAt(UnaryArithmeticExpressionNode expr, double[] variables) {
+		val child = expr.child.evalAt(variables)
+		return switch(expr.op) {
+			case "+": child
+			case "-": -1.0 * child
+			default: 0.0
+		}
+	}
+	def dispatch double evalAt(MathFunction expr, double[] variables) {
+		if(expr.argument != null) {
+			EcosystemDescription.MATH_FUNCTIONS.evalFunction(expr.name, expr.argument.evalAt(variables))
+		} else {
+			0.0
+		}
+	}
+	def dispatch double evalAt(RecordFunction expr, double[] variables) {
+		0.0
+	}
+	def dispatch double evalAt(RecordFunctionArgument expr, double[] variables) {
+		0.0
+	}
+	def dispatch double evalAt(RealLiteral expr, double[] variables) {
+		expr.value
+	}
+	def dispatch double evalAt(IntegerLiteral expr, double[] variables) {
+		((expr.value) as double)
+	}
+	def dispatch double evalAt(Identifier expr, double[] variables) {
+		val i = EcosystemDescription.MATH_VARIABLES.indexOf(expr.name)
+		if(i >= 0 && i < variables.length) {
+			return variables.get(i)
+		}
+		return 0.0
+	}
+	def dispatch double evalAt(Void expr, double[] variables) {
+		0.0
+	}
+	
+	
+	
+	/*
+	 * Conservative evaluation of variable math expressions over intervals of
+	 * the variables (in the order of EcosystemDescription.MATH_VARIABLES),
+	 * the counterpart of evalAt for boxes instead of points.
+	 */
+	def dispatch ValueInterval evalInterval(RangeExpressionNode expr, ValueInterval[] variables) {
+		ValueInterval.FALSE
+	}
+	def dispatch ValueInterval evalInterval(TernaryConditionalExpressionNode expr, ValueInterval[] variables) {
+		val condition = expr.condition.evalInterval(variables)
+		if(condition.isTrue) {
+			return expr.ifTrue.evalInterval(variables)
+		}
+		if(condition.isFalse) {
+			return expr.ifFalse.evalInterval(variables)
+		}
+		return expr.ifTrue.evalInterval(variables).hull(expr.ifFalse.evalInterval(variables))
+	}
+	def dispatch ValueInterval evalInterval(LogicalExpressionNode expr, ValueInterval[] variables) {
+		// as a boolean interval
+		var result = expr.operands.head.evalInterval(variables).not.not
+		for(i : 1 ..< expr.operands.length) {
+			if("&&".equals(expr.ops.get(i-1))) {
+				result = result.and(expr.operands.get(i).evalInterval(variables))
+			} else {
+				result = result.or(expr.operands.get(i).evalInterval(variables))
+			}
+		}
+		return result
+	}
+	def dispatch ValueInterval evalInterval(BinaryBooleanExpressionNode expr, ValueInterval[] variables) {
+		expr.left.evalInterval(variables).compare(expr.op, expr.right.evalInterval(variables))
+	}
+	def dispatch ValueInterval evalInterval(UnitExpressionNode expr, ValueInterval[] variables) {
+		val child = expr.child.evalInterval(variables)
+		val lower = EcosystemDescription.convertToBaseUnit(expr.unit, child.lower)
+		val upper = EcosystemDescription.convertToBaseUnit(expr.unit, child.upper)
+		return new ValueInterval(Math.min(lower, upper), Math.max(lower, upper))
+	}
+	def dispatch ValueInterval evalInterval(SumExpressionNode expr, ValueInterval[] variables) {
+		evalIntervalChain(expr.operands, expr.ops, variables)
+	}
+	def dispatch ValueInterval evalInterval(ProductExpressionNode expr, ValueInterval[] variables) {
+		evalIntervalChain(expr.operands, expr.ops, variables)
+	}
+	def dispatch ValueInterval evalInterval(UnaryBooleanExpressionNode expr, ValueInterval[] variables) {
+		expr.child.evalInterval(variables).not
+	}
+	def dispatch ValueInterval evalInterval(UnaryArithmeticExpressionNode expr, ValueInterval[] variables) {
+		val child = expr.child.evalInterval(variables)
+		return switch(expr.op) {
+			case "+": child
+			case "-": child.negate
+			default: ValueInterval.FALSE
+		}
+	}
+	def dispatch ValueInterval evalInterval(MathFunction expr, ValueInterval[] variables) {
+		if(expr.argument != null) {
+			expr.argument.evalInterval(variables).applyMathFunction(expr.name)
+		} else {
+			ValueInterval.FALSE
+		}
+	}
+	def dispatch ValueInterval evalInterval(RecordFunction expr, ValueInterval[] variables) {
+		ValueInterval.FALSE
+	}
+	def dispatch ValueInterval evalInterval(RecordFunctionArgument expr, ValueInterval[] variables) {
+		ValueInterval.FALSE
+	}
+	def dispatch ValueInterval evalInterval(RealLiteral expr, ValueInterval[] variables) {
+		ValueInterval.point(expr.value)
+	}
+	def dispatch ValueInterval evalInterval(IntegerLiteral expr, ValueInterval[] variables) {
+		ValueInterval.point(expr.value)
+	}
+	def dispatch ValueInterval evalInterval(Identifier expr, ValueInterval[] variables) {
+		val i = EcosystemDescription.MATH_VARIABLES.indexOf(expr.name)
+		if(i >= 0 && i < variables.length) {
+			return variables.get(i)
+		}
+		return ValueInterval.FALSE
+	}
+	def dispatch ValueInterval evalInterval(Void expr, ValueInterval[] variables) {
+		ValueInterval.FALSE
+	}
+	
+	def ValueInterval evalIntervalChain(List<Expression> operands, List<String> ops, ValueInterval[] variables) {
+		var result = operands.head.evalInterval(variables)
+		for(i : 1 ..< operands.length) {
+			val right = operands.get(i).evalInterval(variables)
+			result = switch(ops.get(i-1)) {
+				case "+": result.add(right)
+				case "-": result.subtract(right)
+				case "*": result.multiply(right)
+				case "/": result.divide(right)
+				default: ValueInterval.FALSE
+			}
+		}
+		return result
+	}
+	
 	
 	
 	def dispatch SpratDimensionality evalDim(RangeExpressionNode expr) {
@@ -189,16 +458,20 @@ class ExpressionHelper {
 	def dispatch SpratDimensionality evalDim(TernaryConditionalExpressionNode expr) {
 		return SpratDimensionality.ZERO
 	}
+	def dispatch SpratDimensionality evalDim(LogicalExpressionNode expr) {
+		return SpratDimensionality.ZERO
+	}
 	def dispatch SpratDimensionality evalDim(BinaryBooleanExpressionNode expr) {
 		return SpratDimensionality.ZERO
 	}
 	def dispatch SpratDimensionality evalDim(UnitExpressionNode expr) {
 		return SpratDimensionality.ZERO
 	}
-	def dispatch SpratDimensionality evalDim(BinaryArithmeticExpressionNode expr) {
-		val left = expr.left.evalDim
-		val right = expr.right.evalDim
-		return combinDims(left, right)
+	def dispatch SpratDimensionality evalDim(SumExpressionNode expr) {
+		return expr.operands.evalDimChain
+	}
+	def dispatch SpratDimensionality evalDim(ProductExpressionNode expr) {
+		return expr.operands.evalDimChain
 	}
 	def dispatch SpratDimensionality evalDim(UnaryBooleanExpressionNode expr) {
 		return SpratDimensionality.ZERO
@@ -231,6 +504,14 @@ class ExpressionHelper {
 		return SpratDimensionality.ZERO
 	}
 	
+	def SpratDimensionality evalDimChain(List<Expression> operands) {
+		var dim = SpratDimensionality.ZERO
+		for(operand : operands) {
+			dim = combinDims(dim, operand.evalDim)
+		}
+		return dim
+	}
+	
 	def SpratDimensionality combinDims(SpratDimensionality a, SpratDimensionality b) {
 		if(a == SpratDimensionality.N || b == SpratDimensionality.N) {
 			return SpratDimensionality.N
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The header and time axis of a gridded forcing file. Forcing files are
+ * little-endian binary files with a time series of fields on a rectangular
+ * grid of the horizontal dimensions:
+ *
+ *   char[8]  MAGIC
+ *   uint32   nComponents
+ *   uint32   nDimensions
+ *   nDimensions times: float64 min, float64 max, uint64 nPoints
+ *   uint64   nTimes
+ *   float64  times[nTimes]
+ *   float64  values[nTimes][nComponents][nPoints_0]...[nPoints_nDimensions-1]
+ *
+ * Dimension d has the grid points min + i*(max-min)/(nPoints_d-1), the last
+ * dimension varies fastest. Times are in seconds since the start of the
+ * simulation and strictly increasing. All fields are 8 byte aligned, so a
+ * time slice starts at getSliceOffset(t).
+ *
+ * Only the header and the time axis are mapped, files of any size can be
+ * checked.
+ */
+public class ForcingFile {
+	public static final String MAGIC = "SPRATFC1";
+	static final int FIXED_HEADER_SIZE = 16;
+	static final int DIMENSION_SIZE = 24;
+
+	final int nComponents;
+	final double[] min;
+	final double[] max;
+	final long[] nPoints;
+	final double[] times;
+
+
+	ForcingFile(int nComponents, double[] min, double[] max, long[] nPoints, double[] times) {
+		this.nComponents = nComponents;
+		this.min = min;
+		this.max = max;
+		this.nPoints = nPoints;
+		this.times = times;
+	}
+
+	public static ForcingFile read(File file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if(size < FIXED_HEADER_SIZE) {
+				throw new IOException("file is too short for a header");
+			}
+			final MappedByteBuffer fixed = map(channel, 0, FIXED_HEADER_SIZE);
+			final byte[] magic = new byte[MAGIC.length()];
+			fixed.get(magic);
+			if(!MAGIC.equals(new String(magic, StandardCharsets.US_ASCII))) {
+				throw new IOException("not a forcing file, expected '" + MAGIC + "' at the start");
+			}
+			final int nComponents = fixed.getInt();
+			final int nDimensions = fixed.getInt();
+			if(nComponents <= 0 || nDimensions <= 0) {
+				throw new IOException("invalid number of components or dimensions");
+			}
+
+			final long dimensionsEnd = FIXED_HEADER_SIZE + (long)DIMENSION_SIZE * nDimensions + 8;
+			if(size < dimensionsEnd) {
+				throw new IOException("file is too short for " + nDimensions + " dimensions");
+			}
+			final MappedByteBuffer dimensions = map(channel, FIXED_HEADER_SIZE, dimensionsEnd - FIXED_HEADER_SIZE);
+			final double[] min = new double[nDimensions];
+			final double[] max = new double[nDimensions];
+			final long[] nPoints = new long[nDimensions];
+			for(int d = 0; d < nDimensions; ++d) {
+				min[d] = dimensions.getDouble();
+				max[d] = dimensions.getDouble();
+				nPoints[d] = dimensions.getLong();
+				if(!(min[d] < max[d]) || nPoints[d] < 2) {
+					throw new IOException("dimension " + d + " needs min < max and at least 2 points");
+				}
+			}
+			final long nTimes = dimensions.getLong();
+			if(nTimes < 1 || nTimes > (Integer.MAX_VALUE - 8) / 8) {
+				throw new IOException("invalid number of time slices " + nTimes);
+			}
+
+			if(size < dimensionsEnd + 8 * nTimes) {
+				throw new IOException("file is too short for " + nTimes + " time slices");
+			}
+			final MappedByteBuffer axis = map(channel, dimensionsEnd, 8 * nTimes);
+			final double[] times = new double[(int)nTimes];
+			for(int i = 0; i < times.length; ++i) {
+				times[i] = axis.getDouble();
+				if(i > 0 && !(times[i] > times[i-1])) {
+					throw new IOException("times are not strictly increasing at slice " + i);
+				}
+			}
+
+			final ForcingFile forcing = new ForcingFile(nComponents, min, max, nPoints, times);
+			if(size != forcing.getSize()) {
+				throw new IOException("file has " + size + " bytes, the header describes " + forcing.getSize());
+			}
+			return forcing;
+		}
+	}
+
+	static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+		final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	// changes whenever the file is replaced or rewritten, without reading it
+	public static String getStamp(File file) {
+		if(file == null || !file.isFile()) {
+			return "missing";
+		}
+		return file.length() + "@" + file.lastModified();
+	}
+
+
+	public int getNComponents() {
+		return nComponents;
+	}
+	public int getNDimensions() {
+		return nPoints.length;
+	}
+	public double getMin(int dimension) {
+		return min[dimension];
+	}
+	public double getMax(int dimension) {
+		return max[dimension];
+	}
+	public long getNPoints(int dimension) {
+		return nPoints[dimension];
+	}
+	public int getNTimes() {
+		return times.length;
+	}
+	public double getTime(int i) {
+		return times[i];
+	}
+	public double getFirstTime() {
+		return times[0];
+	}
+	public double getLastTime() {
+		return times[times.length - 1];
+	}
+
+	public long getHeaderSize() {
+		return FIXED_HEADER_SIZE + (long)DIMENSION_SIZE * getNDimensions() + 8 + 8L * getNTimes();
+	}
+	public long getSliceSize() {
+		long n = 8L * nComponents;
+		for(long p : nPoints) {
+			n *= p;
+		}
+		return n;
+	}
+	public long getSliceOffset(int t) {
+		return getHeaderSize() + t * getSliceSize();
+	}
+	public long getSize() {
+		return getSliceOffset(getNTimes());
+	}
+}
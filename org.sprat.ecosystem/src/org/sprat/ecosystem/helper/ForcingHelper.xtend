@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper
+
+import com.google.inject.Inject
+import java.io.File
+import org.eclipse.emf.common.CommonPlugin
+import org.sprat.ecosystem.ecosystem.EcosystemModel
+import org.sprat.ecosystem.ecosystem.EntityType
+import org.sprat.ecosystem.ecosystem.Identifier
+import org.sprat.ecosystem.ecosystem.PropertyAttribute
+import org.sprat.ecosystem.ecosystem.StringLiteral
+
+/**
+ * External forcing fields given as Input attributes
+ *
+ *   TemperatureForcing: file @ "temperature.forcing"
+ *   CurrentForcing: file @ "currents.forcing"
+ *
+ * in the format of ForcingFile. Temperature has one component, currents
+ * have the x and y velocity. Without the attribute the simulator uses its
+ * built-in field. Relative paths are resolved against the directory of the
+ * model, and the generated header holds the resolved path, so the simulator
+ * reads the file that was validated.
+ */
+class ForcingHelper {
+	
+	public static val TEMPERATURE = 'TemperatureForcing'
+	public static val CURRENT = 'CurrentForcing'
+	public static val FORCINGS = #[TEMPERATURE, CURRENT]
+	
+	@Inject extension ModelHelper
+	
+	def int getForcingComponents(String forcing) {
+		if(CURRENT.equals(forcing)) 2 else 1
+	}
+	
+	def boolean isForcing(PropertyAttribute a) {
+		FORCINGS.contains(a.name) && a.entity?.type == EntityType.INPUT
+	}
+	
+	def PropertyAttribute getForcing(EcosystemModel model, String forcing) {
+		model.entities.filter[ it.type == EntityType.INPUT ].head?.attributes?.filter(typeof(PropertyAttribute))?.findFirst[
+			forcing.equals(it.name) && it.attribute?.value instanceof Identifier
+				&& 'file'.equals((it.attribute.value as Identifier).name)
+				&& it.forcingFileName != null
+		]
+	}
+	def boolean hasForcing(EcosystemModel model, String forcing) {
+		model.getForcing(forcing) != null
+	}
+	def boolean hasAnyForcing(EcosystemModel model) {
+		FORCINGS.exists[ model.hasForcing(it) ]
+	}
+	
+	def String getForcingFileName(PropertyAttribute a) {
+		val value = a.modifier?.value
+		if(value instanceof StringLiteral) (value as StringLiteral).value
+	}
+	
+	// the absolute path of the forcing file, the name as given unless the model lives in the file system
+	def String getForcingPath(PropertyAttribute a) {
+		a.forcingFile?.absolutePath ?: a.forcingFileName
+	}
+	
+	// null unless the model lives in the file system
+	def File getForcingFile(PropertyAttribute a) {
+		val name = a.forcingFileName
+		if(name == null) {
+			return null
+		}
+		val file = new File(name)
+		if(file.absolute) {
+			return file
+		}
+		if(a.eResource?.URI == null) {
+			return null
+		}
+		val uri = CommonPlugin.resolve(a.eResource.URI)
+		if(!uri.file) {
+			return null
+		}
+		return new File(new File(uri.toFileString).absoluteFile.parentFile, name)
+	}
+}
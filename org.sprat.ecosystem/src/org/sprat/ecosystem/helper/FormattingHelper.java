@@ -35,4 +35,55 @@ public class FormattingHelper {
 				new DecimalFormatSymbols(Locale.US));
 		return nf.format(x);
 	}
+	public static String escapeJson(String str) {
+		StringBuilder result = new StringBuilder();
+		for(char c : str.toCharArray()) {
+			switch(c) {
+				case '"':  result.append("\\\""); break;
+				case '\\': result.append("\\\\"); break;
+				case '\n': result.append("\\n"); break;
+				case '\r': result.append("\\r"); break;
+				case '\t': result.append("\\t"); break;
+				default:
+					if(c < 0x20) {
+						result.append(String.format("\\u%04x", (int) c));
+					} else {
+						result.append(c);
+					}
+			}
+		}
+		return result.toString();
+	}
+	// the contents of a C/C++ string literal; octal escapes, since hex escapes swallow following hex digits
+	public static String escapeCString(String str) {
+		StringBuilder result = new StringBuilder();
+		for(char c : str.toCharArray()) {
+			switch(c) {
+				case '"':  result.append("\\\""); break;
+				case '\\': result.append("\\\\"); break;
+				case '\n': result.append("\\n"); break;
+				case '\r': result.append("\\r"); break;
+				case '\t': result.append("\\t"); break;
+				case '?':  result.append("\\?"); break;
+				default:
+					if(c < 0x20 || c == 0x7f) {
+						result.append(String.format("\\%03o", (int) c));
+					} else {
+						result.append(c);
+					}
+			}
+		}
+		return result.toString();
+	}
+	public static String formatByteSize(long bytes) {
+		final String[] prefixes = {"B", "KiB", "MiB", "GiB", "TiB", "PiB"};
+		double size = bytes;
+		int i = 0;
+		while(Math.abs(size) >= 1024.0 && i < prefixes.length-1) {
+			size /= 1024.0;
+			++i;
+		}
+		DecimalFormat nf = new DecimalFormat(i == 0 ? "0" : "0.0#", new DecimalFormatSymbols(Locale.US));
+		return nf.format(size) + " " + prefixes[i];
+	}
 }
@@ -17,6 +17,11 @@
 package org.sprat.ecosystem.helper
 
 import com.google.inject.Inject
+import java.util.HashMap
+import java.util.Map
+import org.eclipse.emf.ecore.resource.Resource
+import org.eclipse.xtext.EcoreUtil2
+import org.eclipse.xtext.util.IResourceScopeCache
 import org.sprat.ecosystem.EcosystemDescription
 import org.sprat.ecosystem.ecosystem.EcosystemModel
 import org.sprat.ecosystem.ecosystem.Entity
@@ -39,20 +44,23 @@ import org.sprat.ecosystem.ecosystem.Identifier
 
 class GeneratorHelper {
 	
+	public static val PROPERTY_VALUES = 'propertyValues'
+	public static val RECORD_DIMENSIONALITIES = 'recordDimensionalities'
+	
 	@Inject extension ExpressionHelper
+	@Inject extension ModelHelper
+	@Inject IResourceScopeCache cache
 	
 	def getSpeciesEntities(EcosystemModel model) {
-		model.entities.filter[
-			it.type == EntityType.SPECIES
-		]
+		model.species
 	}
 	def nSpecies(EcosystemModel model) {
 		model.getSpeciesEntities.length
 	}
 	def PropertyAttribute getSpeciesPropertyAttribute(Entity s, String name) {
-		(s.attributes.filter[
-			name.equals((it as PropertyAttribute).name)
-		].head as PropertyAttribute)
+		s.attributes.filter(typeof(PropertyAttribute)).filter[
+			name.equals(it.name)
+		].head
 	}
 	
 	def getRealValuedEcosystemProperties() {
@@ -65,31 +73,68 @@ class GeneratorHelper {
 		EcosystemDescription.SPECIES_ATTRIBUTES.attributes.filter[EcosystemDescription.isRealUnitCategory(it.unitCategory)]
 	}
 	
+	// properties whose valid range excludes zero, their reciprocals are precomputed
+	def getInvertibleEcosystemProperties() {
+		getRealValuedEcosystemProperties.filter[!it.range.isInRange(0.0)]
+	}
+	def getInvertibleSpeciesProperties() {
+		getRealValuedSpeciesProperties.filter[!it.range.isInRange(0.0)]
+	}
+	def String getInverseName(SpratAttribute a) {
+		"inverse" + a.name.toFirstUpper
+	}
+	
+	def double getSpeciesPropertyValue(Entity s, String name) {
+		s.getSpeciesPropertyAttribute(name).propertyValue
+	}
+	def double getSpeciesPropertyModifierValue(Entity s, String name) {
+		(s.getSpeciesPropertyAttribute(name).modifier.value as Expression).eval
+	}
+	
+	// inverts wetMass = a * length^b
+	def double getLengthFromWetMassCoefficient(Entity s) {
+		Math.pow(s.getSpeciesPropertyValue("lengthWeightParameter_a"), -1.0/s.getSpeciesPropertyValue("lengthWeightParameter_b"))
+	}
+	
 	
 	def PropertyAttribute findPropertyAttribute(EcosystemModel model, EntityType t, String name) {
-		(model.entities.filter[
+		model.entities.filter[
 			it.type == t
-		].head.attributes.filter[
-			name.equals((it as PropertyAttribute).name)
-		].head as PropertyAttribute)
+		].head?.attributes?.filter(typeof(PropertyAttribute))?.filter[
+			name.equals(it.name)
+		]?.head
 	}
 	
 	
 	
 	def Expression getInitialDistribution(EcosystemModel model, int species) {
-		((model.entities.filter[
-			it.type == EntityType.SPECIES
-		].get(species).attributes.filter[
-			'InitialDistribution'.equals((it as PropertyAttribute).name)
-		].head as PropertyAttribute).modifier.value as Expression)
+		(model.species.get(species).attributes.filter(typeof(PropertyAttribute)).filter[
+			'InitialDistribution'.equals(it.name)
+		].head.modifier.value as Expression)
 	}
 	
 	def double getEcosystemAttributeValue(EcosystemModel model, String name) {
-		(model.findPropertyAttribute(EntityType.ECOSYSTEM, name).attribute.value as Expression).eval
+		model.findPropertyAttribute(EntityType.ECOSYSTEM, name).propertyValue
 	}
 	
 	def double getTMax(EcosystemModel model) {
-		(model.findPropertyAttribute(EntityType.ECOSYSTEM, 'SimulateFor').attribute.value as Expression).eval
+		model.findPropertyAttribute(EntityType.ECOSYSTEM, 'SimulateFor').propertyValue
+	}
+	
+	// the values of all properties are evaluated once per resource and dropped on any change
+	def double getPropertyValue(PropertyAttribute a) {
+		a.eResource.propertyValues.get(a)?:(a.attribute.value as Expression).eval
+	}
+	def Map<PropertyAttribute, Double> getPropertyValues(Resource resource) {
+		cache.get(PROPERTY_VALUES, resource)[
+			val map = new HashMap<PropertyAttribute, Double>
+			for(a : EcoreUtil2.eAllOfType(resource.contents.head, typeof(PropertyAttribute))) {
+				if(a.attribute?.value instanceof Expression) {
+					map.put(a, (a.attribute.value as Expression).eval)
+				}
+			}
+			return map
+		]
 	}
 	
 	def RecordFunction getMeshFunction(EcosystemModel model) {
@@ -121,8 +166,38 @@ class GeneratorHelper {
 		((f.arguments.get(2*dimension) as RecordFunctionArgument).argument as RangeExpressionNode).to.eval
 	}
 	
+	// optional grading of the r dimension after the ranges and resolutions
+	def getMeshSpacingArguments(RecordFunction f) {
+		f.arguments.drop(2*f.meshDimension).filter(typeof(RecordFunctionArgument))
+	}
+	def MeshSpacing getMeshSpacing(int dimension, RecordFunction f) {
+		val min = dimension.getMeshDimensionMin(f)
+		val max = dimension.getMeshDimensionMax(f)
+		val resolution = dimension.getMeshDimensionResolution(f)
+		if(dimension != f.meshDimension-1) {
+			return MeshSpacing.uniform(min, max, resolution)
+		}
+		val args = f.meshSpacingArguments
+		val breakpoints = args.filter[ 'r_break'.equals(it.name) ].map[ it.argument.eval ].toList
+		if(!breakpoints.empty) {
+			return MeshSpacing.piecewise(min, max, resolution, breakpoints)
+		}
+		val ratio = args.findFirst[ 'r_ratio'.equals(it.name) ]
+		if(ratio != null) {
+			return MeshSpacing.geometric(min, max, resolution, ratio.argument.eval)
+		}
+		val spacing = args.findFirst[ 'r_spacing'.equals(it.name) ]?.argument
+		if(spacing instanceof Identifier && MeshSpacing.LOGARITHMIC.equals((spacing as Identifier).name)) {
+			return MeshSpacing.logarithmic(min, max, resolution)
+		}
+		return MeshSpacing.uniform(min, max, resolution)
+	}
+	def boolean isMeshUniform(RecordFunction f) {
+		(0 ..< f.meshDimension).forall[ it.getMeshSpacing(f).uniform ]
+	}
+	
 	def double getTimeStep(EcosystemModel model) {
-		(model.findPropertyAttribute(EntityType.ECOSYSTEM, "TimeStep").attribute.value as Expression).eval
+		model.findPropertyAttribute(EntityType.ECOSYSTEM, "TimeStep").propertyValue
 	}
 	
 	def String getOutputFormat(EcosystemModel model) {
@@ -131,6 +206,10 @@ class GeneratorHelper {
 	def String getOutputModifierString(EcosystemModel model) {
 		(model.findPropertyAttribute(EntityType.OUTPUT, "OutputFormat").modifier.value as StringLiteral).value
 	}
+	def boolean isProfiling(EcosystemModel model) {
+		val value = model.findPropertyAttribute(EntityType.OUTPUT, "Profiling")?.attribute?.value
+		return value instanceof Identifier && 'on'.equals((value as Identifier).name)
+	}
 	
 	
 	
@@ -140,7 +219,19 @@ class GeneratorHelper {
 		].head.attributes.filter(typeof(RecordAttribute))
 	}
 	
-	def deduceDimensionality(RecordAttribute r, EcosystemModel model) {
+	def Integer deduceDimensionality(RecordAttribute r, EcosystemModel model) {
+		model.recordDimensionalities.get(r)?:r.computeDimensionality(model)
+	}
+	def Map<RecordAttribute, Integer> getRecordDimensionalities(EcosystemModel model) {
+		cache.get(RECORD_DIMENSIONALITIES, model.eResource)[
+			val map = new HashMap<RecordAttribute, Integer>
+			for(r : EcoreUtil2.eAllOfType(model, typeof(RecordAttribute))) {
+				map.put(r, r.computeDimensionality(model))
+			}
+			return map
+		]
+	}
+	def Integer computeDimensionality(RecordAttribute r, EcosystemModel model) {
 		val SpratDimensionality dim = r.expression.evalDim
 		switch(dim) {
 			case ZERO: 0
@@ -167,7 +258,13 @@ class GeneratorHelper {
 			every = -1.0
 		} else {
 			name = (r.recModifier as RecordModifierFunction).name
-			every = (r.recModifier as RecordModifierFunction).argument.eval
+			val deltaT = r.rootNode.timeStep
+			// snapped to the time step like the record schedule, unchanged with 'TimeStep: auto'
+			every = RecordScheduler.getSnappedInterval((r.recModifier as RecordModifierFunction).argument.eval, deltaT)
+			// with a fixed time step the recorder fires by the group of its record, see RecordScheduler
+			if(deltaT > 0.0) {
+				name = 'scheduled'
+			}
 		}
 		return '''
 			RecordWhen::«name.toUpperCase»,
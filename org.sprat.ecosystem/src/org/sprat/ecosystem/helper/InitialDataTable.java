@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.sprat.ecosystem.ecosystem.Expression;
+
+/**
+ * The initial distributions of all species evaluated on the grid points of
+ * the mesh. The table is written as a little-endian binary file that the
+ * simulator maps into memory:
+ *
+ *   char[8]  MAGIC
+ *   uint64   hash of the distributions and the mesh
+ *   uint32   nSpecies
+ *   uint32   nDimensions
+ *   nDimensions times: float64 min, float64 max, uint64 nPoints
+ *   float64  values[nSpecies][nPoints_0]...[nPoints_nDimensions-1]
+ *
+ * Dimension d has nPoints_d = n_d+1 grid points min + i*(max-min)/n_d, or the
+ * nodes of a graded r dimension, so the table covers the mesh with and
+ * without the periodic end point. All fields
+ * are 8 byte aligned. The values are computed while the file is streamed.
+ */
+public class InitialDataTable {
+	public static final String MAGIC = "SPRATID1";
+	static final int CHUNK_SIZE = 8192;
+
+	final ExpressionHelper evaluator;
+	final List<Expression> distributions;
+	final MeshSpacing[] spacings;
+	final double[] min;
+	final double[] max;
+	final int[] nPoints;
+	final int[] variableOfDimension;
+	final int nVariables;
+	final long hash;
+
+
+	public InitialDataTable(ExpressionHelper evaluator, List<Expression> distributions,
+			MeshSpacing[] spacings,
+			int[] variableOfDimension, int nVariables, long hash) {
+		this.evaluator = evaluator;
+		this.distributions = distributions;
+		this.spacings = spacings;
+		this.min = new double[spacings.length];
+		this.max = new double[spacings.length];
+		this.nPoints = new int[spacings.length];
+		for(int d = 0; d < spacings.length; ++d) {
+			this.min[d] = spacings[d].getMin();
+			this.max[d] = spacings[d].getMax();
+			this.nPoints[d] = spacings[d].getResolution() + 1;
+		}
+		this.variableOfDimension = variableOfDimension;
+		this.nVariables = nVariables;
+		this.hash = hash;
+	}
+
+
+	public int getNSpecies() {
+		return distributions.size();
+	}
+	public int getNDimensions() {
+		return nPoints.length;
+	}
+	public int getNPoints(int dimension) {
+		return nPoints[dimension];
+	}
+	public long getNPointsTotal() {
+		long n = 1;
+		for(int p : nPoints) {
+			n *= p;
+		}
+		return n;
+	}
+	public long getHash() {
+		return hash;
+	}
+
+	public double getCoordinate(int dimension, int i) {
+		return spacings[dimension].getNode(i);
+	}
+
+	public long getHeaderSize() {
+		return 24 + 24 * getNDimensions();
+	}
+	public long getSize() {
+		return getHeaderSize() + 8 * getNSpecies() * getNPointsTotal();
+	}
+
+	public InputStream openStream() {
+		return new TableStream();
+	}
+
+
+	/*
+	 * 64 bit FNV-1a
+	 */
+	public static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for(byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			h ^= (b & 0xff);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+
+
+	class TableStream extends InputStream {
+		final ByteBuffer buffer = ByteBuffer.allocate(8 * CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		final double[] variables = new double[nVariables];
+		final int[] index = new int[nPoints.length];
+		int species = 0;
+		boolean done = false;
+
+		TableStream() {
+			buffer.put(MAGIC.getBytes(StandardCharsets.US_ASCII));
+			buffer.putLong(hash);
+			buffer.putInt(getNSpecies());
+			buffer.putInt(getNDimensions());
+			for(int d = 0; d < nPoints.length; ++d) {
+				buffer.putDouble(min[d]);
+				buffer.putDouble(max[d]);
+				buffer.putLong(nPoints[d]);
+			}
+			buffer.flip();
+			done = (getNSpecies() == 0 || getNPointsTotal() == 0);
+		}
+
+		// evaluates the next chunk of values, the last dimension varies fastest
+		void fill() {
+			buffer.clear();
+			while(!done && buffer.remaining() >= 8) {
+				for(int d = 0; d < index.length; ++d) {
+					if(variableOfDimension[d] >= 0) {
+						variables[variableOfDimension[d]] = getCoordinate(d, index[d]);
+					}
+				}
+				buffer.putDouble(evaluator.evalAt(distributions.get(species), variables));
+
+				int d = index.length-1;
+				while(d >= 0 && ++index[d] == nPoints[d]) {
+					index[d] = 0;
+					--d;
+				}
+				if(d < 0 && ++species == distributions.size()) {
+					done = true;
+				}
+			}
+			buffer.flip();
+		}
+
+		@Override
+		public int read() {
+			if(!buffer.hasRemaining()) {
+				if(done) {
+					return -1;
+				}
+				fill();
+			}
+			return buffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if(len == 0) {
+				return 0;
+			}
+			if(!buffer.hasRemaining()) {
+				if(done) {
+					return -1;
+				}
+				fill();
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper
+
+import com.google.inject.Inject
+import org.sprat.ecosystem.EcosystemDescription
+import org.sprat.ecosystem.ecosystem.EcosystemModel
+import org.sprat.ecosystem.ecosystem.EntityType
+import org.sprat.ecosystem.ecosystem.Identifier
+
+import static extension org.sprat.ecosystem.helper.FormattingHelper.*
+
+/**
+ * Tabulates the initial distributions for the Input attribute
+ * 'InitialData: tabulated'. The table is keyed by a hash of the distributions
+ * and the mesh, so the simulator can detect a table that does not belong
+ * to its generated headers.
+ */
+class InitialDataTabulator {
+
+	public static val String TABLE_FILE = 'initial_data.bin'
+
+	@Inject extension ExpressionHelper expressionHelper
+	@Inject extension GeneratorHelper
+
+	def boolean isInitialDataTabulated(EcosystemModel model) {
+		val value = model.findPropertyAttribute(EntityType.INPUT, 'InitialData')?.attribute?.value
+		return value instanceof Identifier && 'tabulated'.equals((value as Identifier).name)
+	}
+
+	def InitialDataTable tabulateInitialData(EcosystemModel model) {
+		val meshFunction = model.meshFunction
+		val nDim = meshFunction.meshDimension
+		val MeshSpacing[] spacings = newArrayOfSize(nDim)
+		val variableOfDimension = newIntArrayOfSize(nDim)
+		for(dim : 0 ..< nDim) {
+			spacings.set(dim, dim.getMeshSpacing(meshFunction))
+			variableOfDimension.set(dim, EcosystemDescription.MATH_VARIABLES.indexOf(dim.getMeshDimensionName(nDim)))
+		}
+		val distributions = (0 ..< model.nSpecies).map[model.getInitialDistribution(it)].toList
+
+		return new InitialDataTable(expressionHelper, distributions,
+			spacings,
+			variableOfDimension, EcosystemDescription.MATH_VARIABLES.size,
+			InitialDataTable.hash(model.initialDataKey)
+		)
+	}
+
+	// everything the table depends on, in generated form
+	def String getInitialDataKey(EcosystemModel model) {
+		val meshFunction = model.meshFunction
+		val nDim = meshFunction.meshDimension
+		val spacings = (0 ..< nDim).map[ it.getMeshSpacing(meshFunction) ].toList
+		return '''
+			«InitialDataTable.MAGIC»
+			«FOR dim : 0 ..< nDim»
+				«dim.getMeshDimensionName(nDim)» «dim.getMeshDimensionMin(meshFunction).formatDouble» «dim.getMeshDimensionMax(meshFunction).formatDouble» «dim.getMeshDimensionResolution(meshFunction)»
+				«IF !spacings.get(dim).uniform»
+					nodes «FOR i : 0 .. spacings.get(dim).resolution SEPARATOR ' '»«spacings.get(dim).getNode(i).formatDouble»«ENDFOR»
+				«ENDIF»
+			«ENDFOR»
+			«FOR i : 0 ..< model.nSpecies»
+				«model.getInitialDistribution(i).format»
+			«ENDFOR»
+		'''.toString
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper
+
+import com.google.inject.Inject
+import java.util.Arrays
+import org.sprat.ecosystem.EcosystemDescription
+import org.sprat.ecosystem.ecosystem.EcosystemModel
+import org.sprat.ecosystem.ecosystem.Expression
+import org.sprat.ecosystem.ecosystem.RecordFunction
+
+/**
+ * Bounds of the non-zero support of the initial distributions. The mesh box
+ * is bisected along its relatively widest dimension, and boxes on which the
+ * interval evaluation of the distribution is exactly zero are dropped. The
+ * remaining boxes are merged into one bounding box per species and widened
+ * to the enclosing mesh nodes, so every node outside of it provably starts
+ * with zero.
+ */
+class InitialSupportAnalyzer {
+
+	public static val int MAX_DEPTH = 15
+
+	@Inject extension ExpressionHelper
+	@Inject extension GeneratorHelper
+
+	// node indices lower_0, upper_0, lower_1, ... (inclusive), null if zero everywhere
+	def int[] getInitialSupport(EcosystemModel model, int species) {
+		val meshFunction = model.meshFunction
+		val nDim = meshFunction.meshDimension
+		val meshLower = newDoubleArrayOfSize(nDim)
+		val meshUpper = newDoubleArrayOfSize(nDim)
+		val cellWidth = newDoubleArrayOfSize(nDim)
+		val variableOfDimension = newIntArrayOfSize(nDim)
+		val spacings = (0 ..< nDim).map[ it.getMeshSpacing(meshFunction) ].toList
+		for(dim : 0 ..< nDim) {
+			meshLower.set(dim, dim.getMeshDimensionMin(meshFunction))
+			meshUpper.set(dim, dim.getMeshDimensionMax(meshFunction))
+			// graded dimensions are bisected down to their finest cells
+			cellWidth.set(dim, spacings.get(dim).smallestCellWidth)
+			variableOfDimension.set(dim, EcosystemDescription.MATH_VARIABLES.indexOf(dim.getMeshDimensionName(nDim)))
+		}
+		val support = new SupportBox(meshLower, meshUpper, cellWidth, variableOfDimension, EcosystemDescription.MATH_VARIABLES.size)
+		model.getInitialDistribution(species).bisect(support, Arrays.copyOf(meshLower, nDim), Arrays.copyOf(meshUpper, nDim), 0)
+		if(support.empty) {
+			return null
+		}
+		val nodes = newIntArrayOfSize(2*nDim)
+		for(dim : 0 ..< nDim) {
+			nodes.set(2*dim, spacings.get(dim).floorNode(support.lower.get(dim)))
+			nodes.set(2*dim + 1, spacings.get(dim).ceilNode(support.upper.get(dim)))
+		}
+		return nodes
+	}
+
+	def boolean coversMesh(int[] nodes, RecordFunction meshFunction) {
+		nodes != null && (0 ..< meshFunction.meshDimension).forall[
+			nodes.get(2*it) == 0 && nodes.get(2*it + 1) == it.getMeshDimensionResolution(meshFunction)
+		]
+	}
+
+	def boolean isSpatialDimension(int dim, int nDim) {
+		!'r'.equals(dim.getMeshDimensionName(nDim))
+	}
+
+	protected def void bisect(Expression distribution, SupportBox support, double[] lower, double[] upper, int depth) {
+		if(support.coversMesh) {
+			return
+		}
+		if(distribution.evalInterval(support.variables(lower, upper)).isZero) {
+			return
+		}
+		var split = -1
+		var widest = 1.0
+		for(dim : 0 ..< lower.length) {
+			val cells = (upper.get(dim) - lower.get(dim)) / support.cellWidth.get(dim)
+			if(cells > widest) {
+				widest = cells
+				split = dim
+			}
+		}
+		if(split < 0 || depth >= MAX_DEPTH) {
+			support.add(lower, upper)
+			return
+		}
+		val middle = 0.5 * (lower.get(split) + upper.get(split))
+		val lowerHalfUpper = Arrays.copyOf(upper, upper.length)
+		lowerHalfUpper.set(split, middle)
+		val upperHalfLower = Arrays.copyOf(lower, lower.length)
+		upperHalfLower.set(split, middle)
+		distribution.bisect(support, lower, lowerHalfUpper, depth + 1)
+		distribution.bisect(support, upperHalfLower, upper, depth + 1)
+	}
+}
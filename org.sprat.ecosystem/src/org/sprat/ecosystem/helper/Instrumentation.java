@@ -0,0 +1,277 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Opt-in timings of the tooling: wall time, calls and allocated bytes per
+ * validation check and per generated file, and counts of the expression
+ * dispatches. Enabled with -Dsprat.instrumentation=true, the --instrument
+ * option of the standalone generator or over JMX. Disabled, every probe is
+ * a single flag test.
+ *
+ * Times are inclusive, so a check that evaluates expressions also contains
+ * the time of the evaluations. Allocated bytes are only available on JVMs
+ * with per-thread allocation accounting and are -1 otherwise.
+ */
+public class Instrumentation implements InstrumentationMXBean {
+	public static final String ENABLED_PROPERTY = "sprat.instrumentation";
+	public static final String OBJECT_NAME = "org.sprat.ecosystem:type=Instrumentation";
+	
+	public static final String CHECK = "check";
+	public static final String GENERATE = "generate";
+	
+	static final Instrumentation INSTANCE = new Instrumentation();
+	static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+	
+	static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	static final Method ALLOCATED_BYTES = findAllocatedBytesMethod();
+	
+	static final ConcurrentHashMap<String, Section> sections = new ConcurrentHashMap<>();
+	static final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+	
+	static {
+		register();
+	}
+	
+	
+	static class Section {
+		final String kind;
+		final String name;
+		final AtomicLong calls = new AtomicLong();
+		final AtomicLong wallNanos = new AtomicLong();
+		final AtomicLong allocatedBytes = new AtomicLong();
+		
+		Section(String kind, String name) {
+			this.kind = kind;
+			this.name = name;
+		}
+	}
+	
+	public static class Timer {
+		static final Timer NONE = new Timer(null, 0L, 0L);
+		
+		final Section section;
+		final long startNanos;
+		final long startBytes;
+		
+		Timer(Section section, long startNanos, long startBytes) {
+			this.section = section;
+			this.startNanos = startNanos;
+			this.startBytes = startBytes;
+		}
+		
+		public void stop() {
+			if(section == null) {
+				return;
+			}
+			section.calls.incrementAndGet();
+			section.wallNanos.addAndGet(System.nanoTime() - startNanos);
+			if(startBytes >= 0) {
+				section.allocatedBytes.addAndGet(allocatedBytes() - startBytes);
+			}
+		}
+	}
+	
+	
+	public static boolean isOn() {
+		return enabled;
+	}
+	
+	public static Timer start(String kind, String name) {
+		if(!enabled) {
+			return Timer.NONE;
+		}
+		final String key = kind + ':' + name;
+		Section section = sections.get(key);
+		if(section == null) {
+			final Section created = new Section(kind, name);
+			section = sections.putIfAbsent(key, created);
+			if(section == null) {
+				section = created;
+			}
+		}
+		return new Timer(section, System.nanoTime(), allocatedBytes());
+	}
+	
+	public static void count(String counter) {
+		if(!enabled) {
+			return;
+		}
+		AtomicLong value = counters.get(counter);
+		if(value == null) {
+			final AtomicLong created = new AtomicLong();
+			value = counters.putIfAbsent(counter, created);
+			if(value == null) {
+				value = created;
+			}
+		}
+		value.incrementAndGet();
+	}
+	
+	/*
+	 * The peak is the sum of the peaks of the heap pools since the last
+	 * reset, an upper bound of the actual peak. Measured independently of
+	 * whether the instrumentation is enabled.
+	 */
+	public static void resetPeakHeap() {
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+	
+	public static long getPeakHeapBytes() {
+		long bytes = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP && pool.isValid() && pool.getPeakUsage() != null) {
+				bytes += pool.getPeakUsage().getUsed();
+			}
+		}
+		return bytes;
+	}
+	
+	public static InstrumentationMXBean getInstance() {
+		return INSTANCE;
+	}
+	
+	
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	@Override
+	public void setEnabled(boolean enabled) {
+		Instrumentation.enabled = enabled;
+	}
+	
+	@Override
+	public void reset() {
+		sections.clear();
+		counters.clear();
+	}
+	
+	/*
+	 * Sections of each kind are sorted by decreasing wall time, so the hot
+	 * spot comes first.
+	 */
+	@Override
+	public String getSummaryJson() {
+		final TreeSet<String> kinds = new TreeSet<>();
+		for(Section s : sections.values()) {
+			kinds.add(s.kind);
+		}
+		final StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("\t\"enabled\": ").append(enabled).append(",\n");
+		json.append("\t\"allocationTracking\": ").append(ALLOCATED_BYTES != null).append(",\n");
+		for(String kind : kinds) {
+			final List<Section> ofKind = new ArrayList<>();
+			for(Section s : sections.values()) {
+				if(s.kind.equals(kind)) {
+					ofKind.add(s);
+				}
+			}
+			Collections.sort(ofKind, new Comparator<Section>() {
+				@Override
+				public int compare(Section a, Section b) {
+					return Long.compare(b.wallNanos.get(), a.wallNanos.get());
+				}
+			});
+			json.append("\t\"").append(FormattingHelper.escapeJson(kind)).append("\": [\n");
+			for(int i = 0; i < ofKind.size(); ++i) {
+				final Section s = ofKind.get(i);
+				json.append("\t\t{\"name\": \"").append(FormattingHelper.escapeJson(s.name))
+					.append("\", \"calls\": ").append(s.calls.get())
+					.append(", \"wallMillis\": ").append(FormattingHelper.formatDouble(s.wallNanos.get() * 1e-6))
+					.append(", \"allocatedBytes\": ").append(ALLOCATED_BYTES != null ? s.allocatedBytes.get() : -1)
+					.append(i + 1 < ofKind.size() ? "},\n" : "}\n");
+			}
+			json.append("\t],\n");
+		}
+		json.append("\t\"counters\": {");
+		final Map<String, AtomicLong> sortedCounters = new TreeMap<>(counters);
+		String separator = "";
+		for(Map.Entry<String, AtomicLong> c : sortedCounters.entrySet()) {
+			json.append(separator).append('"').append(FormattingHelper.escapeJson(c.getKey())).append("\": ").append(c.getValue().get());
+			separator = ", ";
+		}
+		json.append("}\n");
+		json.append("}\n");
+		return json.toString();
+	}
+	
+	
+	static long allocatedBytes() {
+		if(ALLOCATED_BYTES == null) {
+			return -1L;
+		}
+		try {
+			return (Long) ALLOCATED_BYTES.invoke(THREADS, Thread.currentThread().getId());
+		} catch(ReflectiveOperationException e) {
+			return -1L;
+		}
+	}
+	
+	// com.sun.management.ThreadMXBean is looked up on the implementation, so
+	// it does not have to be visible to this bundle
+	static Method findAllocatedBytesMethod() {
+		for(Class<?> c = THREADS.getClass(); c != null; c = c.getSuperclass()) {
+			for(Class<?> i : c.getInterfaces()) {
+				try {
+					final Method m = i.getMethod("getThreadAllocatedBytes", long.class);
+					m.invoke(THREADS, Thread.currentThread().getId());
+					return m;
+				} catch(ReflectiveOperationException | RuntimeException e) {
+					// not supported by this interface or JVM
+				}
+			}
+		}
+		return null;
+	}
+	
+	static void register() {
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			if(!server.isRegistered(name)) {
+				server.registerMBean(INSTANCE, name);
+			}
+		} catch(Exception | LinkageError e) {
+			// JMX is optional, the summary is still available through getInstance()
+		}
+	}
+}
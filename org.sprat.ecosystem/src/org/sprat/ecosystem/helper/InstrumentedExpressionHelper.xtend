@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper
+
+import org.sprat.ecosystem.ecosystem.Expression
+
+/**
+ * Counts the expression dispatches for {@link Instrumentation}. Bound in
+ * place of ExpressionHelper, so the recursive calls are counted as well.
+ */
+class InstrumentedExpressionHelper extends ExpressionHelper {
+
+	override String format(Expression expr) {
+		Instrumentation.count('format')
+		super.format(expr)
+	}
+
+	override double eval(Expression expr) {
+		Instrumentation.count('eval')
+		super.eval(expr)
+	}
+
+	override double evalAt(Expression expr, double[] variables) {
+		Instrumentation.count('evalAt')
+		super.evalAt(expr, variables)
+	}
+
+	override ValueInterval evalInterval(Expression expr, ValueInterval[] variables) {
+		Instrumentation.count('evalInterval')
+		super.evalInterval(expr, variables)
+	}
+
+	override SpratDimensionality evalDim(Expression expr) {
+		Instrumentation.count('evalDim')
+		super.evalDim(expr)
+	}
+}
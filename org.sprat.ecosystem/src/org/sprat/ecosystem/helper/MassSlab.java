@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper;
+
+
+/*
+ * A mass range of a record function resolved to the nodes of the r
+ * dimension. Node i stands for its control interval
+ * [r_i - h/2, r_i + h/2] clipped to the mesh, or the interval between the
+ * midpoints to its neighbors on a graded r dimension. Its weight is the
+ * fraction of that interval inside the mass range, which is 1 for all nodes
+ * but the first and the last. An empty slab has last < first.
+ */
+public class MassSlab {
+	final int first;
+	final int last;
+	final double firstWeight;
+	final double lastWeight;
+	
+	public MassSlab(int first, int last, double firstWeight, double lastWeight) {
+		this.first = first;
+		this.last = last;
+		this.firstWeight = firstWeight;
+		this.lastWeight = lastWeight;
+	}
+	
+	/*
+	 * Negative bounds are open as in the unresolved form of the range.
+	 */
+	public static MassSlab resolve(double from, double to, double rMin, double rMax, int resolution) {
+		final double h = (rMax - rMin) / resolution;
+		final double lower = (from < 0.0 ? rMin : Math.max(from, rMin));
+		final double upper = (to < 0.0 ? rMax : Math.min(to, rMax));
+		if(lower > upper) {
+			return new MassSlab(0, -1, 0.0, 0.0);
+		}
+		
+		int first = -1;
+		int last = -1;
+		double firstWeight = 0.0;
+		double lastWeight = 0.0;
+		final int candidateFirst = Math.max(0, (int) Math.floor((lower - rMin) / h - 0.5));
+		final int candidateLast = Math.min(resolution, (int) Math.ceil((upper - rMin) / h + 0.5));
+		for(int i = candidateFirst; i <= candidateLast; ++i) {
+			final double weight = controlWeight(i, lower, upper, rMin, rMax, h);
+			if(weight > 0.0) {
+				if(first < 0) {
+					first = i;
+					firstWeight = weight;
+				}
+				last = i;
+				lastWeight = weight;
+			}
+		}
+		if(first < 0) {
+			return new MassSlab(0, -1, 0.0, 0.0);
+		}
+		return new MassSlab(first, last, firstWeight, lastWeight);
+	}
+	
+	public static MassSlab resolve(double from, double to, MeshSpacing r) {
+		if(r.isUniform()) {
+			return resolve(from, to, r.getMin(), r.getMax(), r.getResolution());
+		}
+		final double lower = (from < 0.0 ? r.getMin() : Math.max(from, r.getMin()));
+		final double upper = (to < 0.0 ? r.getMax() : Math.min(to, r.getMax()));
+		if(lower > upper) {
+			return new MassSlab(0, -1, 0.0, 0.0);
+		}
+		
+		int first = -1;
+		int last = -1;
+		double firstWeight = 0.0;
+		double lastWeight = 0.0;
+		for(int i = r.floorNode(lower); i <= r.ceilNode(upper); ++i) {
+			final double weight = overlapWeight(lower, upper, r.getControlLower(i), r.getControlUpper(i));
+			if(weight > 0.0) {
+				if(first < 0) {
+					first = i;
+					firstWeight = weight;
+				}
+				last = i;
+				lastWeight = weight;
+			}
+		}
+		if(first < 0) {
+			return new MassSlab(0, -1, 0.0, 0.0);
+		}
+		return new MassSlab(first, last, firstWeight, lastWeight);
+	}
+	
+	private static double controlWeight(int i, double lower, double upper, double rMin, double rMax, double h) {
+		final double controlLower = Math.max(rMin, rMin + (i - 0.5) * h);
+		final double controlUpper = Math.min(rMax, rMin + (i + 0.5) * h);
+		return overlapWeight(lower, upper, controlLower, controlUpper);
+	}
+	
+	private static double overlapWeight(double lower, double upper, double controlLower, double controlUpper) {
+		final double overlap = Math.min(upper, controlUpper) - Math.max(lower, controlLower);
+		if(overlap <= 0.0) {
+			return 0.0;
+		}
+		return Math.min(1.0, overlap / (controlUpper - controlLower));
+	}
+	
+	public int getFirst() {
+		return first;
+	}
+	public int getLast() {
+		return last;
+	}
+	public double getFirstWeight() {
+		return firstWeight;
+	}
+	public double getLastWeight() {
+		return lastWeight;
+	}
+	public boolean isEmpty() {
+		return last < first;
+	}
+	
+	public String format() {
+		return "MassSlab(" + first + ", " + last + ", "
+			+ FormattingHelper.formatDouble(firstWeight) + ", " + FormattingHelper.formatDouble(lastWeight) + ")";
+	}
+}
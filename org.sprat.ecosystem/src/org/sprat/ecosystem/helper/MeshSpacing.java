@@ -0,0 +1,179 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper;
+
+import java.util.List;
+
+
+/*
+ * Node coordinates of one dimension of the rectangular mesh. Dimensions are
+ * uniform with the nodes min + i*(max-min)/n unless the r dimension is
+ * graded: masses span from eggs to adults, so r may be spaced
+ * logarithmically, with a constant ratio of consecutive cell widths, or
+ * uniformly within segments between breakpoints that get the same number of
+ * cells each. Invalid grading parameters, which the validator reports, fall
+ * back to uniform spacing.
+ */
+public class MeshSpacing {
+	public static final String UNIFORM = "uniform";
+	public static final String LOGARITHMIC = "log";
+	
+	final double min;
+	final double max;
+	final int resolution;
+	// null for uniform spacing
+	final double[] nodes;
+	
+	MeshSpacing(double min, double max, int resolution, double[] nodes) {
+		this.min = min;
+		this.max = max;
+		this.resolution = resolution;
+		this.nodes = nodes;
+	}
+	
+	public static MeshSpacing uniform(double min, double max, int resolution) {
+		return new MeshSpacing(min, max, resolution, null);
+	}
+	
+	public static MeshSpacing logarithmic(double min, double max, int resolution) {
+		if(!(min > 0.0) || !(max > min) || resolution < 1) {
+			return uniform(min, max, resolution);
+		}
+		final double[] nodes = new double[resolution + 1];
+		final double logRatio = Math.log(max / min);
+		for(int i = 0; i < resolution; ++i) {
+			nodes[i] = min * Math.exp(logRatio * i / resolution);
+		}
+		return graded(min, max, resolution, nodes);
+	}
+	
+	// ratio = (width of cell i+1) / (width of cell i)
+	public static MeshSpacing geometric(double min, double max, int resolution, double ratio) {
+		if(!(ratio > 0.0) || ratio == 1.0 || !(max > min) || resolution < 1) {
+			return uniform(min, max, resolution);
+		}
+		final double[] nodes = new double[resolution + 1];
+		final double firstWidth = (max - min) * (ratio - 1.0) / (Math.pow(ratio, resolution) - 1.0);
+		for(int i = 0; i < resolution; ++i) {
+			nodes[i] = min + firstWidth * (Math.pow(ratio, i) - 1.0) / (ratio - 1.0);
+		}
+		return graded(min, max, resolution, nodes);
+	}
+	
+	public static MeshSpacing piecewise(double min, double max, int resolution, List<Double> breakpoints) {
+		if(!isValidBreakpoints(min, max, resolution, breakpoints)) {
+			return uniform(min, max, resolution);
+		}
+		final int nSegments = breakpoints.size() + 1;
+		final int cellsPerSegment = resolution / nSegments;
+		final double[] nodes = new double[resolution + 1];
+		for(int s = 0; s < nSegments; ++s) {
+			final double lower = (s == 0 ? min : breakpoints.get(s - 1));
+			final double upper = (s == nSegments - 1 ? max : breakpoints.get(s));
+			for(int i = 0; i < cellsPerSegment; ++i) {
+				nodes[s * cellsPerSegment + i] = lower + i * (upper - lower) / cellsPerSegment;
+			}
+		}
+		return graded(min, max, resolution, nodes);
+	}
+	
+	// strictly increasing inside of (min, max), and every segment gets the same number of cells
+	public static boolean isValidBreakpoints(double min, double max, int resolution, List<Double> breakpoints) {
+		if(breakpoints.isEmpty() || resolution % (breakpoints.size() + 1) != 0) {
+			return false;
+		}
+		double previous = min;
+		for(double b : breakpoints) {
+			if(!(b > previous)) {
+				return false;
+			}
+			previous = b;
+		}
+		return previous < max;
+	}
+	
+	// the end points are exact, so the mesh box is the same as for uniform spacing
+	private static MeshSpacing graded(double min, double max, int resolution, double[] nodes) {
+		nodes[0] = min;
+		nodes[resolution] = max;
+		return new MeshSpacing(min, max, resolution, nodes);
+	}
+	
+	
+	public boolean isUniform() {
+		return nodes == null;
+	}
+	public double getMin() {
+		return min;
+	}
+	public double getMax() {
+		return max;
+	}
+	public int getResolution() {
+		return resolution;
+	}
+	
+	public double getNode(int i) {
+		if(nodes == null) {
+			return min + i * (max - min) / resolution;
+		}
+		return nodes[i];
+	}
+	
+	public double getSmallestCellWidth() {
+		if(nodes == null) {
+			return (max - min) / resolution;
+		}
+		double smallest = max - min;
+		for(int i = 0; i < resolution; ++i) {
+			smallest = Math.min(smallest, nodes[i + 1] - nodes[i]);
+		}
+		return smallest;
+	}
+	
+	// largest node index with a coordinate <= x, at least 0
+	public int floorNode(double x) {
+		if(nodes == null) {
+			return Math.max(0, (int) Math.floor((x - min) / ((max - min) / resolution)));
+		}
+		int i = 0;
+		while(i < resolution && nodes[i + 1] <= x) {
+			++i;
+		}
+		return i;
+	}
+	
+	// smallest node index with a coordinate >= x, at most the resolution
+	public int ceilNode(double x) {
+		if(nodes == null) {
+			return Math.min(resolution, (int) Math.ceil((x - min) / ((max - min) / resolution)));
+		}
+		int i = resolution;
+		while(i > 0 && nodes[i - 1] >= x) {
+			--i;
+		}
+		return i;
+	}
+	
+	// node i stands for the interval between the midpoints to its neighbors, clipped to the mesh
+	public double getControlLower(int i) {
+		return i <= 0 ? min : 0.5 * (getNode(i - 1) + getNode(i));
+	}
+	public double getControlUpper(int i) {
+		return i >= resolution ? max : 0.5 * (getNode(i) + getNode(i + 1));
+	}
+}
@@ -16,19 +16,31 @@
 
 package org.sprat.ecosystem.helper
 
+import com.google.inject.Inject
+import java.util.ArrayList
+import java.util.HashMap
+import java.util.LinkedHashSet
+import java.util.Map
 import org.eclipse.emf.ecore.EObject
+import org.eclipse.xtext.util.IResourceScopeCache
 import org.sprat.ecosystem.ecosystem.Attribute
 import org.sprat.ecosystem.ecosystem.EcosystemModel
 import org.sprat.ecosystem.ecosystem.Entity
 import org.sprat.ecosystem.ecosystem.EntityType
 
 class ModelHelper {
+	
+	public static val SPECIES_INDEX = 'speciesIndex'
+	
+	@Inject IResourceScopeCache cache
+	
 	def String getEntityTypePrintName(EntityType t) {
 		switch(t) {
 			case EntityType.SPECIES: "Species"
 			case EntityType.ECOSYSTEM: "Ecosystem"
 			case EntityType.INPUT: "Input"
 			case EntityType.OUTPUT: "Output"
+			case EntityType.ENSEMBLE: "Ensemble"
 		}
 	}
 	
@@ -54,21 +66,48 @@ class ModelHelper {
 		return (container as EcosystemModel)
 	}
 	
-	def getSpecies(EcosystemModel model) {
+	def boolean isLibrary(EcosystemModel model) {
+		model.name != null
+	}
+	
+	def getLocalSpecies(EcosystemModel model) {
 		model.entities.filter[it.type == EntityType.SPECIES]
 	}
 	
-	def int getSpeciesIndex(String name, EcosystemModel model) {
-		val spEntities = model.entities.filter[it.type == EntityType.SPECIES]
-		for(i : 0 ..< spEntities.length) {
-			if(spEntities.get(i).name.equals(name)) {
-				return i
-			}
+	// imported species come first, in import order, followed by the local ones
+	def getSpecies(EcosystemModel model) {
+		val species = new ArrayList<Entity>
+		model.importedLibraries.forEach[ species.addAll(it.localSpecies) ]
+		species.addAll(model.localSpecies)
+		return species
+	}
+	
+	def getImportedLibraries(EcosystemModel model) {
+		new LinkedHashSet<EcosystemModel>(model.imports.map[ it.library ].filter[ it != null && !it.eIsProxy ].toList)
+	}
+	
+	// the index is built once per resource and dropped on any change;
+	// imported species are indexed relative to the importing model;
+	// unresolved species are linking errors, so generation never gets here with one
+	def int getSpeciesIndex(Entity species, EcosystemModel model) {
+		val index = model.speciesIndex.get(species)
+		if(index == null) {
+			throw new IllegalArgumentException("Species '" + species?.name + "' is not a species of the model")
 		}
-		return 0;
+		return index
+	}
+	def Map<Entity, Integer> getSpeciesIndex(EcosystemModel model) {
+		cache.get(SPECIES_INDEX, model.eResource)[
+			val map = new HashMap<Entity, Integer>
+			model.species.forEach[ s, i | map.put(s, i) ]
+			return map
+		]
 	}
 	
 	def nEntitiesOfType(EcosystemModel model, EntityType t) {
-		model.entities.filter[ it.type == t ].length
+		if(t == EntityType.SPECIES) {
+			return model.species.size
+		}
+		return model.entities.filter[ it.type == t ].length
 	}
 }
\ No newline at end of file
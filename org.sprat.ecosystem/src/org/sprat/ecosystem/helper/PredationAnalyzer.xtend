@@ -0,0 +1,151 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper
+
+import com.google.inject.Inject
+import java.util.ArrayList
+import java.util.List
+import java.util.TreeMap
+import org.eclipse.xtext.util.IResourceScopeCache
+import org.sprat.ecosystem.ecosystem.EcosystemModel
+import org.sprat.ecosystem.ecosystem.Entity
+import org.sprat.ecosystem.ecosystem.EntityType
+import org.sprat.ecosystem.ecosystem.Expression
+
+/**
+ * Pairs of species that can interact by predation. A predator of wet mass m
+ * preys from its LarvaeBeginPredationMass on, and only on prey of at most
+ * m / PredatorPreyRatio. The individuals of a species weigh between the wet
+ * mass of an egg (EggDryMass / DryToWetMassRatio) and MaxWetMass, widened to
+ * the support of the initial distribution on r. A pair interacts if both
+ * ranges leave some mass to the predator and to the prey; the masses are
+ * resolved to nodes of r like the mass ranges of records, see MassSlab. In an
+ * ensemble the pairs and windows are the union over the members.
+ */
+class PredationAnalyzer {
+
+	public static val PREDATOR_PREY_INTERACTIONS = 'predatorPreyInteractions'
+	static val MASS_PROPERTIES = #['EggDryMass', 'DryToWetMassRatio', 'LarvaeBeginPredationMass', 'MaxWetMass']
+
+	@Inject extension GeneratorHelper
+	@Inject extension ModelHelper
+	@Inject extension InitialSupportAnalyzer
+	@Inject extension EnsembleHelper
+	@Inject extension ResourceEstimator
+	@Inject IResourceScopeCache cache
+
+	// the validator reports all models whose masses cannot be evaluated
+	def boolean isPredationAnalyzable(EcosystemModel model) {
+		model.isEstimable
+			&& model.findPropertyAttribute(EntityType.ECOSYSTEM, 'PredatorPreyRatio')?.attribute?.value instanceof Expression
+			&& model.species.forall[ s |
+				MASS_PROPERTIES.forall[ s.getSpeciesPropertyAttribute(it)?.attribute?.value instanceof Expression ]
+				&& s.getSpeciesPropertyAttribute('InitialDistribution')?.modifier?.value instanceof Expression
+			]
+	}
+
+	// ordered by predator and prey, computed once per resource and dropped on any change
+	def List<PredatorPreyInteraction> getPredatorPreyInteractions(EcosystemModel model) {
+		cache.get(PREDATOR_PREY_INTERACTIONS, model.eResource)[
+			val meshFunction = model.meshFunction
+			val rSpacing = (meshFunction.meshDimension - 1).getMeshSpacing(meshFunction)
+			val supports = (0 ..< model.nSpecies).map[ model.getInitialSupport(it) ].toList
+			if(!model.hasEnsemble) {
+				return model.analyze(rSpacing, supports, model.getEcosystemAttributeValue('PredatorPreyRatio'))[ s, name |
+					s.getSpeciesPropertyValue(name)
+				]
+			}
+			val union = new TreeMap<Integer, PredatorPreyInteraction>
+			for(member : model.ensembleMembers) {
+				val interactions = model.analyze(rSpacing, supports, member.getMemberEcosystemPropertyValue(model, 'PredatorPreyRatio'))[ s, name |
+					member.getMemberSpeciesPropertyValue(s, name)
+				]
+				for(i : interactions) {
+					val key = i.predator * model.nSpecies + i.prey
+					val previous = union.get(key)
+					union.put(key, if(previous == null) i else previous.hull(i))
+				}
+			}
+			return new ArrayList<PredatorPreyInteraction>(union.values)
+		]
+	}
+
+	// every pair on all nodes, for parameters that are only known at run time
+	def List<PredatorPreyInteraction> getAllPredatorPreyPairs(EcosystemModel model) {
+		val meshFunction = model.meshFunction
+		val nR = (meshFunction.meshDimension - 1).getMeshDimensionResolution(meshFunction)
+		val pairs = new ArrayList<PredatorPreyInteraction>
+		for(predator : 0 ..< model.nSpecies) {
+			for(prey : 0 ..< model.nSpecies) {
+				pairs.add(new PredatorPreyInteraction(predator, prey, 0, nR, 0, nR))
+			}
+		}
+		return pairs
+	}
+
+	// in kg, for the base values of the model
+	def double getMaxPreyMass(EcosystemModel model, int predator) {
+		val meshFunction = model.meshFunction
+		val rSpacing = (meshFunction.meshDimension - 1).getMeshSpacing(meshFunction)
+		val s = model.species.get(predator)
+		val upper = s.getMassUpper(model.getInitialSupport(predator), rSpacing)[ e, name | e.getSpeciesPropertyValue(name) ]
+		return upper / model.getEcosystemAttributeValue('PredatorPreyRatio')
+	}
+
+	protected def List<PredatorPreyInteraction> analyze(EcosystemModel model, MeshSpacing rSpacing, List<int[]> supports,
+		double ratio, (Entity, String)=>double value
+	) {
+		val species = model.species
+		val nSpecies = species.size
+		val lower = newDoubleArrayOfSize(nSpecies)
+		val upper = newDoubleArrayOfSize(nSpecies)
+		for(i : 0 ..< nSpecies) {
+			lower.set(i, species.get(i).getMassLower(supports.get(i), rSpacing, value))
+			upper.set(i, species.get(i).getMassUpper(supports.get(i), rSpacing, value))
+		}
+		
+		val interactions = new ArrayList<PredatorPreyInteraction>
+		for(predator : 0 ..< nSpecies) {
+			val beginPredation = Math.max(lower.get(predator), value.apply(species.get(predator), 'LarvaeBeginPredationMass'))
+			for(prey : 0 ..< nSpecies) {
+				// the predators heavy enough for the lightest prey, the prey light enough for the heaviest predator
+				val predatorSlab = MassSlab.resolve(Math.max(beginPredation, ratio * lower.get(prey)), upper.get(predator), rSpacing)
+				val preySlab = MassSlab.resolve(lower.get(prey), Math.min(upper.get(prey), upper.get(predator) / ratio), rSpacing)
+				if(!predatorSlab.empty && !preySlab.empty) {
+					interactions.add(new PredatorPreyInteraction(predator, prey, predatorSlab.first, predatorSlab.last, preySlab.first, preySlab.last))
+				}
+			}
+		}
+		return interactions
+	}
+
+	protected def double getMassLower(Entity s, int[] support, MeshSpacing rSpacing, (Entity, String)=>double value) {
+		val eggWetMass = value.apply(s, 'EggDryMass') / value.apply(s, 'DryToWetMassRatio')
+		if(support == null) {
+			return eggWetMass
+		}
+		return Math.min(eggWetMass, rSpacing.getNode(support.get(support.length - 2)))
+	}
+
+	protected def double getMassUpper(Entity s, int[] support, MeshSpacing rSpacing, (Entity, String)=>double value) {
+		val maxWetMass = value.apply(s, 'MaxWetMass')
+		if(support == null) {
+			return maxWetMass
+		}
+		return Math.max(maxWetMass, rSpacing.getNode(support.get(support.length - 1)))
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper;
+
+
+/*
+ * A pair of species that can interact by predation, with the nodes of the r
+ * dimension (inclusive) on which the predator can reach the prey and on
+ * which the prey can be reached, see PredationAnalyzer.
+ */
+public class PredatorPreyInteraction {
+	final int predator;
+	final int prey;
+	final int predatorFirst;
+	final int predatorLast;
+	final int preyFirst;
+	final int preyLast;
+	
+	public PredatorPreyInteraction(int predator, int prey, int predatorFirst, int predatorLast, int preyFirst, int preyLast) {
+		this.predator = predator;
+		this.prey = prey;
+		this.predatorFirst = predatorFirst;
+		this.predatorLast = predatorLast;
+		this.preyFirst = preyFirst;
+		this.preyLast = preyLast;
+	}
+	
+	// the smallest windows containing both, for the union over ensemble members
+	public PredatorPreyInteraction hull(PredatorPreyInteraction other) {
+		return new PredatorPreyInteraction(predator, prey,
+			Math.min(predatorFirst, other.predatorFirst), Math.max(predatorLast, other.predatorLast),
+			Math.min(preyFirst, other.preyFirst), Math.max(preyLast, other.preyLast));
+	}
+	
+	public int getPredator() {
+		return predator;
+	}
+	public int getPrey() {
+		return prey;
+	}
+	public int getPredatorFirst() {
+		return predatorFirst;
+	}
+	public int getPredatorLast() {
+		return predatorLast;
+	}
+	public int getPreyFirst() {
+		return preyFirst;
+	}
+	public int getPreyLast() {
+		return preyLast;
+	}
+	
+	public String format() {
+		return "{" + predator + ", " + prey + ", " + predatorFirst + ", " + predatorLast + ", " + preyFirst + ", " + preyLast + "}";
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * Case-insensitive prefix tree mapping names to values. Each node keeps the
+ * values of its whole subtree in insertion order, so a lookup costs
+ * O(length of prefix) and returns a list that must not be modified.
+ */
+public class PrefixTrie<T> {
+	final Node<T> root = new Node<>();
+
+	static class Node<T> {
+		final TreeMap<Character, Node<T>> children = new TreeMap<>();
+		final ArrayList<T> values = new ArrayList<>();
+	}
+
+	public PrefixTrie() {}
+
+
+	public void add(String key, T value) {
+		if(key == null || value == null) {
+			return;
+		}
+		Node<T> node = root;
+		node.values.add(value);
+		for(char c : key.toLowerCase(Locale.US).toCharArray()) {
+			Node<T> child = node.children.get(c);
+			if(child == null) {
+				child = new Node<>();
+				node.children.put(c, child);
+			}
+			node = child;
+			node.values.add(value);
+		}
+	}
+
+	public ArrayList<T> findByPrefix(String prefix) {
+		if(prefix == null) {
+			return root.values;
+		}
+		Node<T> node = root;
+		for(char c : prefix.toLowerCase(Locale.US).toCharArray()) {
+			node = node.children.get(c);
+			if(node == null) {
+				return new ArrayList<>();
+			}
+		}
+		return node.values;
+	}
+
+	public ArrayList<T> getAll() {
+		return root.values;
+	}
+
+	public int size() {
+		return root.values.size();
+	}
+}
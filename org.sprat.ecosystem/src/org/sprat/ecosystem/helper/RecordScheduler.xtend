@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper
+
+import com.google.inject.Inject
+import java.util.ArrayList
+import java.util.LinkedHashMap
+import java.util.List
+import org.sprat.ecosystem.ecosystem.EcosystemModel
+import org.sprat.ecosystem.ecosystem.RecordAttribute
+import org.sprat.ecosystem.ecosystem.RecordModifierFunction
+
+/**
+ * Step-indexed schedule of the 'every' records. Intervals are snapped to
+ * multiples of the time step, records with the same period form a group,
+ * and the groups firing at a step are stored as a bit mask in a table that
+ * repeats with the least common multiple of the periods. Schedules with a
+ * longer cycle than MAX_TABLE_LENGTH or more than MAX_TABLE_GROUPS groups
+ * fall back to one modulo per group. With 'TimeStep: auto' there are no
+ * steps to schedule by, and the recorders keep their own time intervals.
+ */
+class RecordScheduler {
+
+	public static val int MAX_TABLE_LENGTH = 4096
+	public static val int MAX_TABLE_GROUPS = 64
+
+	@Inject extension ExpressionHelper
+	@Inject extension GeneratorHelper
+
+	// interval of an 'every' record in s, null for other records
+	def Double getRecordInterval(RecordAttribute r) {
+		if(r.recModifier instanceof RecordModifierFunction) {
+			return (r.recModifier as RecordModifierFunction).argument.eval
+		}
+		return null
+	}
+
+	// false for 'TimeStep: auto', which evaluates to 0
+	def boolean isStepScheduled(EcosystemModel model) {
+		model.timeStep > 0.0
+	}
+
+	// requires deltaT > 0
+	def static long getRecordPeriodSteps(double every, double deltaT) {
+		Math.max(1L, Math.round(every/deltaT))
+	}
+
+	// the interval itself without a fixed time step
+	def static double getSnappedInterval(double every, double deltaT) {
+		if(deltaT <= 0.0) {
+			return every
+		}
+		return getRecordPeriodSteps(every, deltaT) * deltaT
+	}
+
+	def static boolean isAlignedToTimeStep(double every, double deltaT) {
+		Math.abs(getSnappedInterval(every, deltaT) - every) <= 1.0e-9 * Math.abs(every)
+	}
+
+	// period in steps -> indices of the records, in order of first appearance; empty without a fixed time step
+	def LinkedHashMap<Long, List<Integer>> getRecordGroups(EcosystemModel model) {
+		val deltaT = model.timeStep
+		val records = model.recordAttributes.toList
+		val groups = new LinkedHashMap<Long, List<Integer>>
+		if(deltaT <= 0.0) {
+			return groups
+		}
+		for(i : 0 ..< records.size) {
+			val every = records.get(i).recordInterval
+			if(every != null) {
+				val period = getRecordPeriodSteps(every, deltaT)
+				if(!groups.containsKey(period)) {
+					groups.put(period, new ArrayList<Integer>)
+				}
+				groups.get(period).add(i)
+			}
+		}
+		return groups
+	}
+
+	// group index per record, -1 for records that are not periodic
+	def List<Integer> getGroupOfRecord(EcosystemModel model) {
+		val groupOfRecord = new ArrayList<Integer>
+		model.recordAttributes.forEach[ groupOfRecord.add(-1) ]
+		model.recordGroups.values.forEach[ records, group |
+			records.forEach[ groupOfRecord.set(it, group) ]
+		]
+		return groupOfRecord
+	}
+
+	// cycle of the schedule, or MAX_TABLE_LENGTH + 1 if it does not fit into a table
+	def static long getScheduleLength(Iterable<Long> periods) {
+		var long length = 1
+		for(period : periods) {
+			length = length / gcd(length, period) * period
+			if(length > MAX_TABLE_LENGTH) {
+				return MAX_TABLE_LENGTH + 1
+			}
+		}
+		return length
+	}
+
+	def static boolean isTabulated(LinkedHashMap<Long, List<Integer>> groups) {
+		groups.size <= MAX_TABLE_GROUPS && getScheduleLength(groups.keySet) <= MAX_TABLE_LENGTH
+	}
+
+	// bit g is set if group g fires at the step
+	def static List<Long> getScheduleTable(LinkedHashMap<Long, List<Integer>> groups) {
+		val length = getScheduleLength(groups.keySet)
+		val periods = groups.keySet.toList
+		val table = new ArrayList<Long>
+		for(var long step = 0; step < length; step++) {
+			var long mask = 0
+			for(g : 0 ..< periods.size) {
+				if(step % periods.get(g) == 0) {
+					mask = mask.bitwiseOr((1L).shiftLeft(g))
+				}
+			}
+			table.add(mask)
+		}
+		return table
+	}
+
+	def static String getMaskType(int nGroups) {
+		if(nGroups <= 8) 'uint8_t'
+		else if(nGroups <= 16) 'uint16_t'
+		else if(nGroups <= 32) 'uint32_t'
+		else 'uint64_t'
+	}
+
+	def private static long gcd(long a, long b) {
+		if(b == 0) a else gcd(b, a % b)
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper;
+
+import java.util.ArrayList;
+
+/**
+ * Static size estimate of a simulation run, see {@link ResourceEstimator}.
+ * A number of time steps of -1 means that the time step is chosen
+ * automatically by the simulator and the step count is unknown.
+ */
+public class ResourceEstimate {
+	
+	public static class RecordEstimate {
+		final String description;
+		final int dimensionality;
+		final long valuesPerWrite;
+		final long nWrites;
+		final long bytes;
+		
+		public RecordEstimate(String description, int dimensionality, long valuesPerWrite, long nWrites, long bytes) {
+			this.description = description;
+			this.dimensionality = dimensionality;
+			this.valuesPerWrite = valuesPerWrite;
+			this.nWrites = nWrites;
+			this.bytes = bytes;
+		}
+		
+		public String getDescription() {
+			return description;
+		}
+		public int getDimensionality() {
+			return dimensionality;
+		}
+		public long getValuesPerWrite() {
+			return valuesPerWrite;
+		}
+		public long getNWrites() {
+			return nWrites;
+		}
+		public long getBytes() {
+			return bytes;
+		}
+	}
+	
+	int nSpecies;
+	int nDimensions;
+	long nDoFs;
+	long fieldMemoryBytes;
+	long solverOverheadBytes;
+	long nTimeSteps;
+	double workPerStep;
+	final ArrayList<RecordEstimate> records = new ArrayList<>();
+	
+	public ResourceEstimate() {}
+	
+	
+	public int getNSpecies() {
+		return nSpecies;
+	}
+	public void setNSpecies(int nSpecies) {
+		this.nSpecies = nSpecies;
+	}
+	
+	public int getNDimensions() {
+		return nDimensions;
+	}
+	public void setNDimensions(int nDimensions) {
+		this.nDimensions = nDimensions;
+	}
+	
+	public long getNDoFs() {
+		return nDoFs;
+	}
+	public void setNDoFs(long nDoFs) {
+		this.nDoFs = nDoFs;
+	}
+	
+	public long getFieldMemoryBytes() {
+		return fieldMemoryBytes;
+	}
+	public void setFieldMemoryBytes(long fieldMemoryBytes) {
+		this.fieldMemoryBytes = fieldMemoryBytes;
+	}
+	
+	public long getSolverOverheadBytes() {
+		return solverOverheadBytes;
+	}
+	public void setSolverOverheadBytes(long solverOverheadBytes) {
+		this.solverOverheadBytes = solverOverheadBytes;
+	}
+	
+	public long getTotalMemoryBytes() {
+		return fieldMemoryBytes + solverOverheadBytes;
+	}
+	
+	public long getNTimeSteps() {
+		return nTimeSteps;
+	}
+	public void setNTimeSteps(long nTimeSteps) {
+		this.nTimeSteps = nTimeSteps;
+	}
+	public boolean hasKnownTimeSteps() {
+		return nTimeSteps >= 0;
+	}
+	
+	public double getWorkPerStep() {
+		return workPerStep;
+	}
+	public void setWorkPerStep(double workPerStep) {
+		this.workPerStep = workPerStep;
+	}
+	public double getTotalWork() {
+		if(!hasKnownTimeSteps()) {
+			return -1.0;
+		}
+		return workPerStep * nTimeSteps;
+	}
+	
+	public ArrayList<RecordEstimate> getRecords() {
+		return records;
+	}
+	public void addRecord(RecordEstimate record) {
+		if(record != null) {
+			records.add(record);
+		}
+	}
+	public long getTotalOutputBytes() {
+		long sum = 0;
+		for(RecordEstimate r : records) {
+			sum += r.getBytes();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper
+
+import com.google.inject.Inject
+import org.sprat.ecosystem.ecosystem.EcosystemModel
+import org.sprat.ecosystem.ecosystem.EntityType
+import org.sprat.ecosystem.ecosystem.Expression
+import org.sprat.ecosystem.ecosystem.Identifier
+import org.sprat.ecosystem.ecosystem.IntegerLiteral
+import org.sprat.ecosystem.ecosystem.RangeExpressionNode
+import org.sprat.ecosystem.ecosystem.RecordAttribute
+import org.sprat.ecosystem.ecosystem.RecordFunction
+import org.sprat.ecosystem.ecosystem.RecordFunctionArgument
+import org.sprat.ecosystem.ecosystem.RecordModifierFunction
+
+import static extension org.sprat.ecosystem.helper.FormattingHelper.*
+
+/**
+ * Estimates the size of a simulation run from the model alone.
+ *
+ * Assumptions:
+ *  - The periodic P1 mesh has n_x * n_y * n_r degrees of freedom.
+ *  - Each species owns one field of reals; the FCT solver keeps
+ *    SOLVER_VECTORS_PER_SPECIES further vectors of the same size per species.
+ *  - Work per step is one stencil of 3^nDimensions neighbours per species and
+ *    DoF plus one predator-prey interaction per pair of species and DoF.
+ *  - Binary output stores one real per value, text output about
+ *    TEXT_BYTES_PER_VALUE characters.
+ *
+ * Budgets are given in MiB via the system properties MEMORY_BUDGET_PROPERTY
+ * and OUTPUT_BUDGET_PROPERTY.
+ */
+class ResourceEstimator {
+
+	public static val int BYTES_PER_REAL = 8
+	public static val int SOLVER_VECTORS_PER_SPECIES = 6
+	public static val int TEXT_BYTES_PER_VALUE = 24
+
+	public static val String MEMORY_BUDGET_PROPERTY = "org.sprat.ecosystem.memoryBudgetMiB"
+	public static val String OUTPUT_BUDGET_PROPERTY = "org.sprat.ecosystem.outputBudgetMiB"
+	public static val long DEFAULT_MEMORY_BUDGET_MIB = 64L * 1024L
+	public static val long DEFAULT_OUTPUT_BUDGET_MIB = 100L * 1024L
+
+	@Inject extension ExpressionHelper
+	@Inject extension GeneratorHelper
+	@Inject extension ModelHelper
+
+	def long getMemoryBudget() {
+		Long.getLong(MEMORY_BUDGET_PROPERTY, DEFAULT_MEMORY_BUDGET_MIB) * 1024L * 1024L
+	}
+	def long getOutputBudget() {
+		Long.getLong(OUTPUT_BUDGET_PROPERTY, DEFAULT_OUTPUT_BUDGET_MIB) * 1024L * 1024L
+	}
+
+	/*
+	 * The estimate needs exactly one Ecosystem, Input and Output entity, a
+	 * well-formed mesh and a simulation time; the validator reports all other cases.
+	 */
+	def boolean isEstimable(EcosystemModel model) {
+		if(model.nEntitiesOfType(EntityType.ECOSYSTEM) != 1
+			|| model.nEntitiesOfType(EntityType.INPUT) != 1
+			|| model.nEntitiesOfType(EntityType.OUTPUT) != 1
+		) {
+			return false
+		}
+		val simulateFor = model.findPropertyAttribute(EntityType.ECOSYSTEM, 'SimulateFor')
+		if(!(simulateFor?.attribute?.value instanceof Expression)) {
+			return false
+		}
+		val mesh = model.findPropertyAttribute(EntityType.INPUT, 'Mesh')
+		if(!(mesh?.attribute?.value instanceof RecordFunction)) {
+			return false
+		}
+		val meshFunction = mesh.attribute.value as RecordFunction
+		if(meshFunction.arguments.length < 2*meshFunction.meshDimension) {
+			return false
+		}
+		for(dim : 0 ..< meshFunction.meshDimension) {
+			val range = meshFunction.arguments.get(2*dim)
+			val resolution = meshFunction.arguments.get(2*dim + 1)
+			if(!(range instanceof RecordFunctionArgument)
+				|| !((range as RecordFunctionArgument).argument instanceof RangeExpressionNode)
+				|| !(resolution instanceof RecordFunctionArgument)
+				|| !((resolution as RecordFunctionArgument).argument instanceof IntegerLiteral)
+			) {
+				return false
+			}
+		}
+		return true
+	}
+
+	def ResourceEstimate estimateResources(EcosystemModel model) {
+		val estimate = new ResourceEstimate
+		val meshFunction = model.meshFunction
+		val nDim = meshFunction.meshDimension
+		val nSpecies = model.nSpecies
+
+		estimate.NSpecies = nSpecies
+		estimate.NDimensions = nDim
+		estimate.NDoFs = meshFunction.countMeshPoints(nDim)
+		estimate.fieldMemoryBytes = nSpecies * estimate.NDoFs * BYTES_PER_REAL
+		estimate.solverOverheadBytes = SOLVER_VECTORS_PER_SPECIES * estimate.fieldMemoryBytes
+
+		val tMax = model.TMax
+		val deltaT = model.timeStepOrAuto
+		estimate.NTimeSteps = if(deltaT > 0.0) Math.ceil(tMax/deltaT) as long else -1L
+		estimate.workPerStep = (Math.pow(3.0, nDim) * nSpecies + nSpecies * nSpecies) * estimate.NDoFs
+
+		val bytesPerValue = if(model.isTextOutput) TEXT_BYTES_PER_VALUE else BYTES_PER_REAL
+		for(r : model.recordAttributes) {
+			val dims = r.deduceDimensionality(model)
+			val valuesPerWrite = meshFunction.countMeshPoints(dims)
+			val nWrites = r.countRecordWrites(tMax, deltaT)
+			estimate.addRecord(new ResourceEstimate.RecordEstimate(
+				r.description,
+				dims,
+				valuesPerWrite,
+				nWrites,
+				valuesPerWrite * nWrites * bytesPerValue
+			))
+		}
+		return estimate
+	}
+
+	// number of mesh points spanned by the first dims dimensions
+	def long countMeshPoints(RecordFunction meshFunction, int dims) {
+		var long n = 1
+		for(dim : 0 ..< dims) {
+			n = n * dim.getMeshDimensionResolution(meshFunction)
+		}
+		return n
+	}
+
+	def double getTimeStepOrAuto(EcosystemModel model) {
+		val value = model.findPropertyAttribute(EntityType.ECOSYSTEM, "TimeStep")?.attribute?.value
+		if(value instanceof Expression) {
+			return value.eval
+		}
+		return -1.0
+	}
+
+	def boolean isTextOutput(EcosystemModel model) {
+		val value = model.findPropertyAttribute(EntityType.OUTPUT, "OutputFormat")?.attribute?.value
+		return value instanceof Identifier && 'TXTFile'.equals((value as Identifier).name)
+	}
+
+	// deltaT <= 0 if unknown, otherwise the interval is snapped to the time step
+	def long countRecordWrites(RecordAttribute r, double tMax, double deltaT) {
+		if(r.recModifier instanceof RecordModifierFunction) {
+			val interval = (r.recModifier as RecordModifierFunction).argument.eval
+			val every = if(deltaT > 0.0 && interval > 0.0) RecordScheduler.getSnappedInterval(interval, deltaT) else interval
+			if(every > 0.0) {
+				return (Math.floor(tMax/every) as long) + 1
+			}
+			return 0
+		}
+		return 1
+	}
+
+	def String summary(ResourceEstimate e) {
+		'''«e.NDoFs» DoFs, «e.totalMemoryBytes.formatByteSize» memory («e.fieldMemoryBytes.formatByteSize» fields), «IF e.hasKnownTimeSteps»«e.NTimeSteps» steps, «ENDIF»«e.workPerStep.formatDouble» operations per step, «e.totalOutputBytes.formatByteSize» output'''
+	}
+}
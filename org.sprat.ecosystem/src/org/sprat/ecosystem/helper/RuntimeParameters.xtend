@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper
+
+import com.google.inject.Inject
+import org.sprat.ecosystem.EcosystemDescription
+import org.sprat.ecosystem.ecosystem.EcosystemModel
+import org.sprat.ecosystem.ecosystem.EntityType
+import org.sprat.ecosystem.ecosystem.Identifier
+
+import static extension org.sprat.ecosystem.helper.FormattingHelper.*
+
+/**
+ * Parameter file for the Input attribute 'Parameters: runtime'. The numeric
+ * parameters are written to a text file that the simulator reads at startup,
+ * so changing a value does not change the generated headers. The file starts
+ * with a hash of the parameter structure (names, counts, species), which the
+ * simulator compares with the hash compiled into its headers. The record
+ * schedule is compiled in as well, so with periodic records the time step
+ * is part of the structure.
+ */
+class RuntimeParameters {
+
+	public static val String PARAMETER_FILE = 'model_parameters.txt'
+	public static val String MAGIC = 'SPRATPAR1'
+
+	@Inject extension GeneratorHelper
+	@Inject extension ModelHelper
+	@Inject extension RecordScheduler
+
+	def boolean isParametersAtRuntime(EcosystemModel model) {
+		val value = model.findPropertyAttribute(EntityType.INPUT, 'Parameters')?.attribute?.value
+		return value instanceof Identifier && 'runtime'.equals((value as Identifier).name)
+	}
+
+	// everything the compiled headers assume about the parameter file
+	def String getParameterStructureKey(EcosystemModel model) {
+		return '''
+			«MAGIC»
+			nDimensions «model.meshFunction.meshDimension»
+			species «FOR s : model.species SEPARATOR ' '»«s.name»«ENDFOR»
+			«IF !model.recordGroups.empty»
+				recordSchedule «model.timeStep.formatDouble»
+			«ENDIF»
+			t_max 1
+			delta_t 1
+			«FOR a : realValuedEcosystemProperties»
+				«a.name.toFirstLower» 1
+			«ENDFOR»
+			«FOR a : realValuedSpeciesProperties»
+				«a.name.toFirstLower» «model.nSpecies»
+				«IF a.hasModifier»
+					«a.name.toFirstLower»Modifier «model.nSpecies»
+				«ENDIF»
+			«ENDFOR»
+		'''.toString
+	}
+
+	def long getParameterStructureHash(EcosystemModel model) {
+		InitialDataTable.hash(model.parameterStructureKey)
+	}
+
+	def generateParameterFile(EcosystemModel model) {
+		val species = model.speciesEntities.toList
+		return '''
+			«MAGIC» «String.format("%016X", model.parameterStructureHash)»
+			# Automatically-generated file. Values may be edited, names and counts must not.
+			# species: «FOR s : species SEPARATOR ', '»«s.name»«ENDFOR»
+			# in s
+			t_max «model.getTMax.formatDouble»
+			# in s
+			delta_t «model.timeStep.formatDouble»
+			«FOR a : realValuedEcosystemProperties»
+				«IF a.unitCategory != EcosystemDescription.DIMENSIONLESS»
+					# in «a.unitCategory.baseUnit»
+				«ENDIF»
+				«a.name.toFirstLower» «model.getEcosystemAttributeValue(a.name).formatDouble»
+			«ENDFOR»
+			«FOR a : realValuedSpeciesProperties»
+				«IF a.unitCategory != EcosystemDescription.DIMENSIONLESS»
+					# in «a.unitCategory.baseUnit»
+				«ENDIF»
+				«a.name.toFirstLower»«FOR s : species» «s.getSpeciesPropertyValue(a.name).formatDouble»«ENDFOR»
+				«IF a.hasModifier»
+					«IF a.modifierUnitCategory != EcosystemDescription.DIMENSIONLESS»
+						# in «a.modifierUnitCategory.baseUnit»
+					«ENDIF»
+					«a.name.toFirstLower»Modifier«FOR s : species» «s.getSpeciesPropertyModifierValue(a.name).formatDouble»«ENDFOR»
+				«ENDIF»
+			«ENDFOR»
+		'''
+	}
+}
@@ -28,6 +28,8 @@ public class SpratAttribute {
 	boolean modifierIsOptional;
 	double defaultModifier;
 	
+	boolean isOptional = false;
+	
 	final ArrayList<String> validIdentifiers = new ArrayList<>();
 	
 	static ValueRange defaultRange = new ValueRange(ValueRange.INF, ValueRange.INF);
@@ -160,6 +162,13 @@ public class SpratAttribute {
 		return modifierRange.print();
 	}
 
+	public boolean isOptional() {
+		return isOptional;
+	}
+	public void setOptional(boolean isOptional) {
+		this.isOptional = isOptional;
+	}
+
 	public boolean isValidIdentifier(String identifier) {
 		return validIdentifiers.contains(identifier);
 	}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper;
+
+
+/*
+ * Bounding box of the boxes added so far, within a mesh box with the given
+ * cell widths; see InitialSupportAnalyzer.
+ */
+public class SupportBox {
+	final double[] meshLower;
+	final double[] meshUpper;
+	final double[] cellWidth;
+	final int[] variableOfDimension;
+	final int nVariables;
+	final double[] lower;
+	final double[] upper;
+	boolean empty = true;
+	
+	public SupportBox(double[] meshLower, double[] meshUpper, double[] cellWidth, int[] variableOfDimension, int nVariables) {
+		this.meshLower = meshLower;
+		this.meshUpper = meshUpper;
+		this.cellWidth = cellWidth;
+		this.variableOfDimension = variableOfDimension;
+		this.nVariables = nVariables;
+		this.lower = new double[meshLower.length];
+		this.upper = new double[meshLower.length];
+	}
+	
+	public double[] getLower() {
+		return lower;
+	}
+	public double[] getUpper() {
+		return upper;
+	}
+	public double[] getCellWidth() {
+		return cellWidth;
+	}
+	public boolean isEmpty() {
+		return empty;
+	}
+	
+	// intervals of the variables for a box, variables without a dimension are 0
+	public ValueInterval[] variables(double[] boxLower, double[] boxUpper) {
+		ValueInterval[] variables = new ValueInterval[nVariables];
+		for(int i = 0; i < nVariables; ++i) {
+			variables[i] = ValueInterval.FALSE;
+		}
+		for(int dim = 0; dim < boxLower.length; ++dim) {
+			if(variableOfDimension[dim] >= 0) {
+				variables[variableOfDimension[dim]] = new ValueInterval(boxLower[dim], boxUpper[dim]);
+			}
+		}
+		return variables;
+	}
+	
+	public void add(double[] boxLower, double[] boxUpper) {
+		for(int dim = 0; dim < boxLower.length; ++dim) {
+			lower[dim] = empty ? boxLower[dim] : Math.min(lower[dim], boxLower[dim]);
+			upper[dim] = empty ? boxUpper[dim] : Math.max(upper[dim], boxUpper[dim]);
+		}
+		empty = false;
+	}
+	
+	public boolean coversMesh() {
+		if(empty) {
+			return false;
+		}
+		for(int dim = 0; dim < lower.length; ++dim) {
+			if(lower[dim] > meshLower[dim] || upper[dim] < meshUpper[dim]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
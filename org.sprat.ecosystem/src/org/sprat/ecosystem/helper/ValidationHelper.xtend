@@ -18,11 +18,9 @@ package org.sprat.ecosystem.helper
 
 import com.google.inject.Inject
 import java.util.ArrayList
-import org.eclipse.emf.ecore.EObject
 import org.sprat.ecosystem.EcosystemDescription
 import org.sprat.ecosystem.ecosystem.EcosystemModel
 import org.sprat.ecosystem.ecosystem.Entity
-import org.sprat.ecosystem.ecosystem.EntityType
 import org.sprat.ecosystem.ecosystem.PropertyAttribute
 import org.sprat.ecosystem.ecosystem.PropertyAttributeValue
 import org.sprat.ecosystem.ecosystem.RangeExpressionNode
@@ -37,16 +35,13 @@ class ValidationHelper {
 	
 	def ArrayList<String> getSpeciesNames(EcosystemModel model) {
 		var ArrayList<String> species = new ArrayList()
-		for(entity : model.entities) {
-			if(entity.type == EntityType.SPECIES && entity.name != null) {
+		for(entity : model.species) {
+			if(entity.name != null) {
 				species.add(entity.name)
 			}
 		}
 		return species
 	}
-	def boolean isValidSpeciesName(String sname, EObject obj) {
-		obj.rootNode.speciesNames.filter[ it==sname ].length > 0
-	}
 	
 	
 	def listMissingAttributes(Entity entity) {
@@ -54,7 +49,7 @@ class ValidationHelper {
 		val propertyAttributes = entity.attributes.filter[it instanceof PropertyAttribute]
 		var ArrayList<SpratAttribute> missing = new ArrayList()
 		
-		for(spratAttribute : attributeCollection.attributes) {
+		for(spratAttribute : attributeCollection.attributes.filter[!it.isOptional]) {
 			if(propertyAttributes.filter[ 
 				spratAttribute.name.equals((it as PropertyAttribute).name)
 			].empty) {
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.helper;
+
+
+/*
+ * Closed interval for the conservative evaluation of variable math
+ * expressions over a box of the mesh. Every value the expression can take
+ * for variables within their intervals lies in the result. Booleans are
+ * subintervals of [0, 1] as in evalAt: [1, 1] is always true, [0, 0] always
+ * false. NaN bounds are widened to the whole real line.
+ */
+public class ValueInterval {
+	final double lower;
+	final double upper;
+	
+	public static final ValueInterval ALL   = new ValueInterval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+	public static final ValueInterval TRUE  = new ValueInterval(1.0, 1.0);
+	public static final ValueInterval FALSE = new ValueInterval(0.0, 0.0);
+	public static final ValueInterval BOOL  = new ValueInterval(0.0, 1.0);
+	
+	public ValueInterval(double lower, double upper) {
+		if(Double.isNaN(lower) || Double.isNaN(upper)) {
+			this.lower = Double.NEGATIVE_INFINITY;
+			this.upper = Double.POSITIVE_INFINITY;
+		} else {
+			this.lower = lower;
+			this.upper = upper;
+		}
+	}
+	
+	public static ValueInterval point(double x) {
+		return new ValueInterval(x, x);
+	}
+	
+	public double getLower() {
+		return lower;
+	}
+	public double getUpper() {
+		return upper;
+	}
+	
+	public boolean isZero() {
+		return lower == 0.0 && upper == 0.0;
+	}
+	public boolean isTrue() {
+		return !contains(0.0);
+	}
+	public boolean isFalse() {
+		return isZero();
+	}
+	public boolean contains(double x) {
+		return lower <= x && x <= upper;
+	}
+	
+	public ValueInterval hull(ValueInterval other) {
+		return new ValueInterval(Math.min(lower, other.lower), Math.max(upper, other.upper));
+	}
+	
+	
+	/*
+	 * Arithmetic
+	 */
+	public ValueInterval negate() {
+		return new ValueInterval(-upper, -lower);
+	}
+	public ValueInterval add(ValueInterval other) {
+		return new ValueInterval(lower + other.lower, upper + other.upper);
+	}
+	public ValueInterval subtract(ValueInterval other) {
+		return add(other.negate());
+	}
+	public ValueInterval multiply(ValueInterval other) {
+		if(isZero() || other.isZero()) {
+			return FALSE;
+		}
+		final double a = product(lower, other.lower);
+		final double b = product(lower, other.upper);
+		final double c = product(upper, other.lower);
+		final double d = product(upper, other.upper);
+		return new ValueInterval(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)));
+	}
+	public ValueInterval divide(ValueInterval other) {
+		if(other.contains(0.0)) {
+			return ALL;
+		}
+		return multiply(new ValueInterval(1.0/other.upper, 1.0/other.lower));
+	}
+	
+	// 0 * inf is 0 for bounds
+	private static double product(double x, double y) {
+		if(x == 0.0 || y == 0.0) {
+			return 0.0;
+		}
+		return x * y;
+	}
+	
+	
+	/*
+	 * Math functions by name, unknown functions give ALL
+	 */
+	public ValueInterval applyMathFunction(String name) {
+		switch(name) {
+			case "sqrt":
+				if(lower < 0.0) {
+					return ALL; // NaN for negative arguments
+				}
+				return new ValueInterval(Math.sqrt(lower), Math.sqrt(upper));
+			case "fabs":
+				if(lower >= 0.0) {
+					return this;
+				}
+				if(upper <= 0.0) {
+					return negate();
+				}
+				return new ValueInterval(0.0, Math.max(-lower, upper));
+			case "exp":
+				return new ValueInterval(Math.exp(lower), Math.exp(upper));
+			case "log":
+				if(lower < 0.0) {
+					return ALL;
+				}
+				return new ValueInterval(Math.log(lower), Math.log(upper));
+			case "sin":
+			case "cos":
+				return new ValueInterval(-1.0, 1.0);
+			default:
+				return ALL;
+		}
+	}
+	
+	
+	/*
+	 * Comparisons and logic, the results are boolean intervals
+	 */
+	public ValueInterval compare(String op, ValueInterval other) {
+		switch(op) {
+			case "<":
+				return decide(upper < other.lower, lower >= other.upper);
+			case ">":
+				return other.compare("<", this);
+			case "<=":
+				return decide(upper <= other.lower, lower > other.upper);
+			case ">=":
+				return other.compare("<=", this);
+			case "==":
+				return decide(lower == upper && other.lower == other.upper && lower == other.lower,
+					upper < other.lower || lower > other.upper);
+			case "!=":
+				return compare("==", other).not();
+			default:
+				return BOOL;
+		}
+	}
+	public ValueInterval not() {
+		return decide(isFalse(), isTrue());
+	}
+	public ValueInterval and(ValueInterval other) {
+		return decide(isTrue() && other.isTrue(), isFalse() || other.isFalse());
+	}
+	public ValueInterval or(ValueInterval other) {
+		return decide(isTrue() || other.isTrue(), isFalse() && other.isFalse());
+	}
+	
+	private static ValueInterval decide(boolean alwaysTrue, boolean alwaysFalse) {
+		if(alwaysTrue) {
+			return TRUE;
+		}
+		if(alwaysFalse) {
+			return FALSE;
+		}
+		return BOOL;
+	}
+	
+	
+	public String print() {
+		return "[" + FormattingHelper.formatDouble(lower) + ", " + FormattingHelper.formatDouble(upper) + "]";
+	}
+}
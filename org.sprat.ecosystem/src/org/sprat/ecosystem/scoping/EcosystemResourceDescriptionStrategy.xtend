@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.scoping
+
+import com.google.inject.Inject
+import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
+import org.eclipse.emf.ecore.EObject
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils
+import org.eclipse.xtext.resource.EObjectDescription
+import org.eclipse.xtext.resource.IEObjectDescription
+import org.eclipse.xtext.resource.impl.DefaultResourceDescriptionStrategy
+import org.eclipse.xtext.util.IAcceptor
+import org.sprat.ecosystem.ecosystem.EcosystemModel
+import org.sprat.ecosystem.ecosystem.Entity
+import org.sprat.ecosystem.ecosystem.EntityType
+import org.sprat.ecosystem.helper.ModelHelper
+
+/**
+ * Exports the libraries and their species to the index of the builder.
+ * Scenarios are not exported.
+ * 
+ * The builder only rebuilds the scenarios importing a library when the
+ * exported descriptions of the library change. Changes to the attributes of
+ * a species do not change its name, so the library is exported together with
+ * a hash of its text.
+ */
+class EcosystemResourceDescriptionStrategy extends DefaultResourceDescriptionStrategy {
+	
+	public static val CONTENT_HASH = 'contentHash'
+	
+	@Inject extension ModelHelper
+	
+	override createEObjectDescriptions(EObject eObject, IAcceptor<IEObjectDescription> acceptor) {
+		switch eObject {
+			EcosystemModel: {
+				if(!eObject.isLibrary) {
+					return false
+				}
+				val name = qualifiedNameProvider.getFullyQualifiedName(eObject)
+				if(name != null) {
+					acceptor.accept(EObjectDescription.create(name, eObject, #{ CONTENT_HASH -> eObject.contentHash }))
+				}
+				return true
+			}
+			Entity: {
+				if(eObject.type == EntityType.SPECIES) {
+					super.createEObjectDescriptions(eObject, acceptor)
+				}
+				return false
+			}
+			default:
+				return false
+		}
+	}
+	
+	// independent of the hashes of the generated files, so the exported descriptions only change with the library
+	protected def String contentHash(EcosystemModel library) {
+		val text = NodeModelUtils.getNode(library)?.text ?: ''
+		val digest = MessageDigest.getInstance('SHA-256').digest(text.getBytes(StandardCharsets.UTF_8))
+		return digest.map[ String.format('%02x', it) ].join
+	}
+}
@@ -3,13 +3,38 @@
  */
 package org.sprat.ecosystem.scoping
 
+import com.google.inject.Inject
+import org.eclipse.emf.ecore.EObject
+import org.eclipse.emf.ecore.EReference
+import org.eclipse.xtext.scoping.IScope
+import org.eclipse.xtext.scoping.Scopes
+import org.eclipse.xtext.util.IResourceScopeCache
+import org.sprat.ecosystem.helper.ModelHelper
+
 /**
  * This class contains custom scoping description.
- * 
+ *
+ * Species arguments of record functions and species of ensemble overrides
+ * refer to the species entities of the model. The scope is built once per
+ * resource and dropped on any change.
+ *
  * see : http://www.eclipse.org/Xtext/documentation.html#scoping
- * on how and when to use it 
+ * on how and when to use it
  *
  */
 class EcosystemScopeProvider extends org.eclipse.xtext.scoping.impl.AbstractDeclarativeScopeProvider {
 
+	@Inject IResourceScopeCache cache
+	@Inject extension ModelHelper
+
+	// the context is the argument itself or, during content assist, its container
+	def IScope scope_RecordFunctionArgument_species(EObject context, EReference ref) {
+		cache.get('speciesScope', context.eResource)[
+			Scopes.scopeFor(context.rootNode.species.filter[ it.name != null ])
+		]
+	}
+	
+	def IScope scope_ParameterOverride_species(EObject context, EReference ref) {
+		scope_RecordFunctionArgument_species(context, ref)
+	}
 }
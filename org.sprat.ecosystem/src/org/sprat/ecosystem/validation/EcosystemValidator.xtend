@@ -17,18 +17,36 @@
 package org.sprat.ecosystem.validation
 
 import com.google.inject.Inject
+import java.io.IOException
+import java.lang.reflect.Method
+import java.util.ArrayList
+import java.util.HashMap
+import java.util.Map
+import org.eclipse.emf.common.util.BasicDiagnostic
+import org.eclipse.emf.common.util.Diagnostic
+import org.eclipse.emf.common.util.DiagnosticChain
+import org.eclipse.emf.ecore.EClass
+import org.eclipse.emf.ecore.EObject
+import org.eclipse.xtext.EcoreUtil2
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils
+import org.eclipse.xtext.validation.AbstractDeclarativeValidator
+import org.eclipse.xtext.validation.AbstractValidationDiagnostic
 import org.eclipse.xtext.validation.Check
+import org.eclipse.xtext.validation.CheckMode
 import org.sprat.ecosystem.EcosystemDescription
-import org.sprat.ecosystem.ecosystem.BinaryArithmeticExpressionNode
 import org.sprat.ecosystem.ecosystem.BinaryBooleanExpressionNode
 import org.sprat.ecosystem.ecosystem.EcosystemModel
 import org.sprat.ecosystem.ecosystem.EcosystemPackage
+import org.sprat.ecosystem.ecosystem.EnsembleMember
 import org.sprat.ecosystem.ecosystem.Entity
 import org.sprat.ecosystem.ecosystem.EntityType
 import org.sprat.ecosystem.ecosystem.Expression
 import org.sprat.ecosystem.ecosystem.Identifier
+import org.sprat.ecosystem.ecosystem.Import
 import org.sprat.ecosystem.ecosystem.IntegerLiteral
+import org.sprat.ecosystem.ecosystem.LogicalExpressionNode
 import org.sprat.ecosystem.ecosystem.MathFunction
+import org.sprat.ecosystem.ecosystem.ProductExpressionNode
 import org.sprat.ecosystem.ecosystem.PropertyAttribute
 import org.sprat.ecosystem.ecosystem.PropertyAttributeValue
 import org.sprat.ecosystem.ecosystem.RangeExpressionNode
@@ -39,13 +57,24 @@ import org.sprat.ecosystem.ecosystem.RecordFunctionArgument
 import org.sprat.ecosystem.ecosystem.RecordModifierFunction
 import org.sprat.ecosystem.ecosystem.RecordModifierIdentifier
 import org.sprat.ecosystem.ecosystem.StringLiteral
+import org.sprat.ecosystem.ecosystem.SumExpressionNode
 import org.sprat.ecosystem.ecosystem.TernaryConditionalExpressionNode
 import org.sprat.ecosystem.ecosystem.UnaryArithmeticExpressionNode
 import org.sprat.ecosystem.ecosystem.UnaryBooleanExpressionNode
 import org.sprat.ecosystem.ecosystem.UnitExpressionNode
+import org.sprat.ecosystem.helper.EnsembleHelper
 import org.sprat.ecosystem.helper.ExpressionHelper
+import org.sprat.ecosystem.helper.ForcingFile
+import org.sprat.ecosystem.helper.ForcingHelper
 import org.sprat.ecosystem.helper.FormattingHelper
+import org.sprat.ecosystem.helper.GeneratorHelper
+import org.sprat.ecosystem.helper.Instrumentation
+import org.sprat.ecosystem.helper.MeshSpacing
 import org.sprat.ecosystem.helper.ModelHelper
+import org.sprat.ecosystem.helper.PredationAnalyzer
+import org.sprat.ecosystem.helper.RecordScheduler
+import org.sprat.ecosystem.helper.ResourceEstimator
+import org.sprat.ecosystem.helper.RuntimeParameters
 import org.sprat.ecosystem.helper.SpratExprContext
 import org.sprat.ecosystem.helper.UnitCollection
 import org.sprat.ecosystem.helper.ValidationHelper
@@ -79,9 +108,147 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 	public static final val EXPRESSION_LACKS_UNIT = 'expressionLacksUnit'
 	public static final val EXPRESSION_LACKS_DEFAULT_MODIFIER = 'expressionLacksDefaultModifier'
 	
+	static val MESH_SPACING_ARGUMENTS = #{'r_spacing', 'r_ratio', 'r_break'}
+	static val MESH_SPACING_SIGNATURE = ", [r_spacing=uniform|log | r_ratio=.. | r_break=.., r_break=.., ...]"
+	static val MAX_MESH_GRADING = 1e6
+	static val FORCING_TOLERANCE = 1e-9
+	
 	@Inject extension ModelHelper
 	@Inject extension ExpressionHelper
 	@Inject extension ValidationHelper
+	@Inject extension ResourceEstimator
+	@Inject extension EnsembleHelper
+	@Inject extension ForcingHelper
+	@Inject extension PredationAnalyzer
+	@Inject GeneratorHelper generatorHelper
+	@Inject RuntimeParameters runtimeParameters
+	
+	
+	
+	/*
+	 * Incremental validation: the diagnostics of each model element are cached
+	 * together with a key of everything its checks depend on, and replayed as
+	 * long as the key is unchanged.
+	 *  - Checks of elements inside an entity depend on the entity's text.
+	 *  - The unique species name check (on the entity), the record checks
+	 *    (species arguments) and the ensemble member checks (species of the
+	 *    overrides) also depend on the names and types of all entities.
+	 *  - The record checks (interval alignment, mass ranges) also depend on
+	 *    the text of the Ecosystem and Input entities (time step and mesh).
+	 *  - The forcing checks also depend on the text of the Ecosystem entity
+	 *    (simulation time) and on the size and date of the forcing file.
+	 *  - The model checks depend on the names and types of all entities and,
+	 *    for the resource estimate and the prey check, on the text of all
+	 *    entities and of the imported libraries.
+	 * The names and types include the imports and the imported species.
+	 * Without a node model nothing is cached.
+	 */
+	override boolean validate(EClass eClass, EObject object, DiagnosticChain diagnostics, Map<Object, Object> context) {
+		val key = object.validationKey(context)
+		if(key == null) {
+			return super.validate(eClass, object, diagnostics, context)
+		}
+		val mode = CheckMode.getCheckMode(context)
+		val cache = ValidationCacheAdapter.get(object)
+		val cached = cache.lookup(mode, key)
+		if(cached != null && cached.forall[ it.isAttachedTo(object) ]) {
+			Instrumentation.count('validationCacheHit')
+			cached.forEach[ diagnostics.add(it) ]
+			return !cached.exists[ it.severity == Diagnostic.ERROR ]
+		}
+		
+		val recorder = new BasicDiagnostic
+		val result = super.validate(eClass, object, recorder, context)
+		val produced = new ArrayList<Diagnostic>(recorder.children)
+		produced.forEach[ diagnostics.add(it) ]
+		cache.store(mode, key, produced)
+		return result
+	}
+	
+	// every check is timed when instrumentation is enabled
+	override protected createMethodWrapper(AbstractDeclarativeValidator instanceToUse, Method method) {
+		new InstrumentedMethodWrapper(instanceToUse, method)
+	}
+	
+	protected def String validationKey(EObject object, Map<Object, Object> context) {
+		val model = EcoreUtil2.getContainerOfType(object, typeof(EcosystemModel))
+		if(model == null) {
+			return null
+		}
+		val entity = EcoreUtil2.getContainerOfType(object, typeof(Entity))
+		if(entity == null) {
+			val entityText = new StringBuilder
+			for(e : model.entities) {
+				val text = e.nodeText(context)
+				if(text == null) {
+					return null
+				}
+				entityText.append(text).append('\u0000')
+			}
+			for(library : model.importedLibraries) {
+				entityText.append(NodeModelUtils.getNode(library)?.text).append('\u0000')
+			}
+			return model.namesAndTypes(context) + '\u0000' + entityText
+		}
+		val text = entity.nodeText(context)
+		if(text == null) {
+			return null
+		}
+		if(object instanceof Entity || EcoreUtil2.getContainerOfType(object, typeof(EnsembleMember)) != null) {
+			return text + '\u0000' + model.namesAndTypes(context)
+		}
+		if(EcoreUtil2.getContainerOfType(object, typeof(RecordAttribute)) != null) {
+			val ecosystemText = model.entities.filter[ it.type == EntityType.ECOSYSTEM || it.type == EntityType.INPUT ].map[ it.nodeText(context) ].join('\u0000')
+			return text + '\u0000' + model.namesAndTypes(context) + '\u0000' + ecosystemText
+		}
+		val property = EcoreUtil2.getContainerOfType(object, typeof(PropertyAttribute))
+		if(property != null && property.isForcing) {
+			val ecosystemText = model.entities.filter[ it.type == EntityType.ECOSYSTEM ].map[ it.nodeText(context) ].join('\u0000')
+			return text + '\u0000' + ecosystemText + '\u0000' + ForcingFile.getStamp(property.forcingFile)
+		}
+		return text
+	}
+	
+	// computed once per validation run, the context lives as long as the run
+	protected def HashMap<EObject, String> runMemo(Map<Object, Object> context) {
+		if(context == null) {
+			return new HashMap
+		}
+		var memo = context.get(typeof(ValidationCacheAdapter)) as HashMap<EObject, String>
+		if(memo == null) {
+			memo = new HashMap
+			context.put(typeof(ValidationCacheAdapter), memo)
+		}
+		return memo
+	}
+	
+	protected def String nodeText(Entity entity, Map<Object, Object> context) {
+		val memo = context.runMemo
+		if(!memo.containsKey(entity)) {
+			memo.put(entity, NodeModelUtils.getNode(entity)?.text)
+		}
+		return memo.get(entity)
+	}
+	
+	protected def String namesAndTypes(EcosystemModel model, Map<Object, Object> context) {
+		val memo = context.runMemo
+		if(!memo.containsKey(model)) {
+			memo.put(model, (
+				model.imports.map[ 'import ' + NodeModelUtils.getTokenText(NodeModelUtils.getNode(it)) ]
+				+ model.species.filter[ it.eResource != model.eResource ].map[ 'imported ' + it.name ]
+				+ model.entities.map[ it.type.getName + ' ' + it.name ]
+			).join('\n'))
+		}
+		return memo.get(model)
+	}
+	
+	// a diagnostic can only be replayed while its target is still part of the model
+	protected def boolean isAttachedTo(Diagnostic d, EObject object) {
+		if(d instanceof AbstractValidationDiagnostic) {
+			return d.sourceEObject != null && d.sourceEObject.eResource == object.eResource
+		}
+		return false
+	}
 	
 	
 	
@@ -96,7 +263,7 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 	
 	@Check
 	def checkAtLeatOneOfEachEntityType(EcosystemModel model) {
-		if(model.entities.length > 0) {
+		if(model.entities.length > 0 && !model.isLibrary) {
 			model.validateAtLeatOneOfEntityType(EntityType.ECOSYSTEM)
 			model.validateAtLeatOneOfEntityType(EntityType.INPUT)
 			model.validateAtLeatOneOfEntityType(EntityType.OUTPUT)
@@ -113,11 +280,91 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 	}
 	
 	
+	@Check
+	def checkLibraryContents(EcosystemModel model) {
+		if(!model.isLibrary) {
+			return
+		}
+		model.imports.forEach[
+			error("A library must not import other libraries", it, EcosystemPackage::eINSTANCE.import_Library)
+		]
+		model.entities.filter[ it.type != EntityType.SPECIES ].forEach[
+			error("A library may only contain 'Species' entities", it, EcosystemPackage::eINSTANCE.entity_Type)
+		]
+	}
+	
+	
+	@Check
+	def checkImport(Import imp) {
+		if(imp.library == null || imp.library.eIsProxy) {
+			return
+		}
+		val model = imp.eContainer as EcosystemModel
+		if(model.imports.filter[ it.library == imp.library ].head != imp) {
+			warning("Library '" + imp.library.name + "' is already imported", imp, EcosystemPackage::eINSTANCE.import_Library)
+			return
+		}
+		val earlierNames = model.imports.takeWhile[ it != imp ].map[ it.library ].filter[ it != null && !it.eIsProxy ]
+			.map[ it.localSpecies.map[ it.name ] ].flatten.toSet
+		imp.library.localSpecies.filter[ earlierNames.contains(it.name) ].forEach[
+			error("Species '" + it.name + "' is already imported from another library", imp, EcosystemPackage::eINSTANCE.import_Library)
+		]
+	}
+	
+	
+	@Check
+	def checkEnsemble(EcosystemModel model) {
+		val ensemble = model.entities.findFirst[ it.type == EntityType.ENSEMBLE ]
+		if(ensemble == null) {
+			return
+		}
+		if(ensemble.attributes.filter(typeof(EnsembleMember)).empty) {
+			error("An ensemble needs at least one member", ensemble, EcosystemPackage::eINSTANCE.entity_ClosingBrace)
+		} else if(runtimeParameters.isParametersAtRuntime(model)) {
+			error("Ensembles require 'Parameters: compiled'", ensemble, EcosystemPackage::eINSTANCE.entity_Type)
+		}
+	}
+	
+	
+	@Check
+	def checkEnsembleMember(EnsembleMember member) {
+		if(member.entity.type != EntityType.ENSEMBLE) {
+			error("Only 'Ensemble' entities can contain members", member, null)
+			return
+		}
+		if(member.entity.attributes.filter(typeof(EnsembleMember)).filter[ member.name == it.name ].length > 1) {
+			error("Member name must be unique", member, EcosystemPackage::eINSTANCE.ensembleMember_Name)
+		}
+		for(o : member.overrides) {
+			val spratAttribute = o.overriddenAttribute
+			if(spratAttribute == null) {
+				error("'" + o.name + "' is not a real-valued " + (if(o.species != null) "species" else "ecosystem") + " property",
+					o, EcosystemPackage::eINSTANCE.parameterOverride_Name
+				)
+			} else if(member.overrides.findFirst[ it.species == o.species && o.name == it.name ] != o) {
+				error("Property is already overridden in this member", o, EcosystemPackage::eINSTANCE.parameterOverride_Name)
+			} else if(o.value != null) {
+				o.value.validateExpr(SpratExprContext.CONST_MATH)
+				val valOfExpr = o.value.eval
+				if(!spratAttribute.range.isInRange(valOfExpr)) {
+					error("Value of expression is "+FormattingHelper.formatDouble(valOfExpr)
+						+" which is outside of "+ spratAttribute.range.print,
+						o.value,
+						null
+					)
+				}
+				o.value.validateCorrectUnit(spratAttribute.unitCategory)
+			}
+		}
+	}
+	
+	
 	@Check
 	def checkOnlyOneOfSingularEntities(EcosystemModel model) {
 		model.validateOnlyOneOfSingularEntities(EntityType.ECOSYSTEM)
 		model.validateOnlyOneOfSingularEntities(EntityType.INPUT)
 		model.validateOnlyOneOfSingularEntities(EntityType.OUTPUT)
+		model.validateOnlyOneOfSingularEntities(EntityType.ENSEMBLE)
 	}
 	protected def validateOnlyOneOfSingularEntities(EcosystemModel model, EntityType t) {
 		if(model.nEntitiesOfType(t) > 1) {
@@ -131,6 +378,62 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 	}
 
 
+	@Check
+	def checkResourceEstimate(EcosystemModel model) {
+		if(!model.estimable) {
+			return
+		}
+		val estimate = model.estimateResources
+		
+		info("Estimated run size: " + estimate.summary, 
+			model.entities.findFirst[ it.type == EntityType.ECOSYSTEM ],
+			EcosystemPackage::eINSTANCE.entity_Type
+		)
+		if(estimate.totalMemoryBytes > memoryBudget) {
+			warning("Estimated memory of " + FormattingHelper.formatByteSize(estimate.totalMemoryBytes)
+				+ " exceeds the budget of " + FormattingHelper.formatByteSize(memoryBudget), 
+				model.entities.findFirst[ it.type == EntityType.INPUT ],
+				EcosystemPackage::eINSTANCE.entity_Type
+			)
+		}
+		if(estimate.totalOutputBytes > outputBudget) {
+			warning("Estimated output of " + FormattingHelper.formatByteSize(estimate.totalOutputBytes)
+				+ " exceeds the budget of " + FormattingHelper.formatByteSize(outputBudget), 
+				model.entities.findFirst[ it.type == EntityType.OUTPUT ],
+				EcosystemPackage::eINSTANCE.entity_Type
+			)
+		}
+	}
+	
+	
+	/*
+	 * A species whose individuals can never reach the mass range of any
+	 * species has no prey, see PredationAnalyzer. Imported species are
+	 * reported at the import of their library.
+	 */
+	@Check
+	def checkSpeciesHavePrey(EcosystemModel model) {
+		if(model.isLibrary || !model.isPredationAnalyzable) {
+			return
+		}
+		val predators = model.predatorPreyInteractions.map[ it.predator ].toSet
+		model.species.forEach[ s, i |
+			if(!predators.contains(i)) {
+				val reach = if(model.hasEnsemble) "in any ensemble member" else "up to " + FormattingHelper.formatDouble(model.getMaxPreyMass(i)) + " kg"
+				val message = "Species '" + s.name + "' has no possible prey: no species on the mesh is within its reach (" + reach + ")"
+				if(s.eResource == model.eResource) {
+					warning(message, s, EcosystemPackage::eINSTANCE.entity_Name)
+				} else {
+					val imp = model.imports.findFirst[ it.library?.eResource == s.eResource ]
+					if(imp != null) {
+						warning(message, imp, EcosystemPackage::eINSTANCE.import_Library)
+					}
+				}
+			}
+		]
+	}
+	
+	
 	@Check
 	def checkSpeciesHasUniqueName(Entity entity) {
 		if(entity.type != EntityType.SPECIES) {
@@ -339,6 +642,7 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 					}
 				} else if(nArgs == 1) { // correct argument?
 					(attribute.recModifier as RecordModifierFunction).argument.validateCorrectUnit(modFunction.arguments.head.units)
+					attribute.validateRecordIntervalAlignment
 				}
 			}
 		}
@@ -347,6 +651,22 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 	}
 	
 	
+	// the record schedule runs in whole time steps
+	protected def void validateRecordIntervalAlignment(RecordAttribute attribute) {
+		val argument = (attribute.recModifier as RecordModifierFunction).argument
+		val deltaT = attribute.rootNode.timeStepOrAuto
+		val every = argument.eval
+		if(deltaT <= 0.0 || every <= 0.0 || RecordScheduler.isAlignedToTimeStep(every, deltaT)) {
+			return
+		}
+		warning("Interval of " + FormattingHelper.formatDouble(every) + " s is not a multiple of the time step of "
+			+ FormattingHelper.formatDouble(deltaT) + " s and is rounded to "
+			+ FormattingHelper.formatDouble(RecordScheduler.getSnappedInterval(every, deltaT)) + " s",
+			argument, null
+		)
+	}
+	
+	
 	@Check
 	def checkSpecialAttributes(PropertyAttribute attribute) {
 		if(attribute.attribute == null) {
@@ -399,7 +719,7 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 				if(!('Rectangular2D1D'.equals(function.name))) {
 					error("Must be one of the following functions: 'Rectangular2D1D'", function, null)
 				} else {
-					if(function.arguments.length != 6 || 
+					if(function.arguments.length < 6 || 
 						!((function.arguments.get(0) as RecordFunctionArgument).argument instanceof RangeExpressionNode) || 
 						!((function.arguments.get(2) as RecordFunctionArgument).argument instanceof RangeExpressionNode) || 
 						!((function.arguments.get(4) as RecordFunctionArgument).argument instanceof RangeExpressionNode) || 
@@ -413,11 +733,12 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 						!('r'.equals((function.arguments.get(4) as RecordFunctionArgument).name)) || 
 						!('n_r'.equals((function.arguments.get(5) as RecordFunctionArgument).name)) 
 					) {
-						error("Function signature is: Rectangular2D1D(x=..~.., n_x=.., y=..~.., n_y=.., r=..~.., n_r=..)", function, null)
+						error("Function signature is: Rectangular2D1D(x=..~.., n_x=.., y=..~.., n_y=.., r=..~.., n_r=.."+MESH_SPACING_SIGNATURE+")", function, null)
 					} else {
 						((function.arguments.get(0) as RecordFunctionArgument).argument as Expression).validateExpr(SpratExprContext.RECORD_FUNCTION_ARGUMENT)
 						((function.arguments.get(2) as RecordFunctionArgument).argument as Expression).validateExpr(SpratExprContext.RECORD_FUNCTION_ARGUMENT)
 						((function.arguments.get(4) as RecordFunctionArgument).argument as Expression).validateExpr(SpratExprContext.RECORD_FUNCTION_ARGUMENT)
+						function.validateMeshSpacing
 					}
 				}
 			} else {
@@ -427,6 +748,140 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 	}
 	
 	
+	/*
+	 * Only the header and the time axis of a forcing file are mapped. The
+	 * coverage of the mesh and of the simulation time is only checked when
+	 * both are well-formed, see ResourceEstimator.isEstimable.
+	 */
+	@Check
+	def checkForcingAttributes(PropertyAttribute attribute) {
+		if(!attribute.isForcing || attribute.forcingFileName == null) {
+			return
+		}
+		val file = attribute.forcingFile
+		if(file == null) {
+			return
+		}
+		var ForcingFile forcing
+		try {
+			forcing = ForcingFile.read(file)
+		} catch(IOException e) {
+			error("Cannot read forcing file '" + file.path + "': " + e.message, attribute.modifier, null)
+			return
+		}
+		
+		val nComponents = attribute.name.forcingComponents
+		if(forcing.NComponents != nComponents) {
+			error("Forcing file has " + forcing.NComponents + " components, " + attribute.name + " needs " + nComponents,
+				attribute.modifier, null
+			)
+		}
+		val model = attribute.rootNode
+		if(!model.isEstimable) {
+			return
+		}
+		val mesh = generatorHelper.getMeshFunction(model)
+		val nDim = generatorHelper.getMeshDimension(mesh)
+		if(forcing.NDimensions != nDim - 1) {
+			error("Forcing file has " + forcing.NDimensions + " dimensions, the mesh has " + (nDim - 1) + " horizontal dimensions",
+				attribute.modifier, null
+			)
+			return
+		}
+		for(dim : 0 ..< nDim - 1) {
+			val min = generatorHelper.getMeshDimensionMin(dim, mesh)
+			val max = generatorHelper.getMeshDimensionMax(dim, mesh)
+			val tolerance = FORCING_TOLERANCE * (max - min)
+			if(forcing.getMin(dim) > min + tolerance || forcing.getMax(dim) < max - tolerance) {
+				error("Forcing file covers " + generatorHelper.getMeshDimensionName(dim, nDim) + " = "
+					+ FormattingHelper.formatDouble(forcing.getMin(dim)) + " ~ " + FormattingHelper.formatDouble(forcing.getMax(dim))
+					+ ", the mesh " + FormattingHelper.formatDouble(min) + " ~ " + FormattingHelper.formatDouble(max),
+					attribute.modifier, null
+				)
+			}
+		}
+		val tMax = generatorHelper.getTMax(model)
+		if(forcing.firstTime > 0.0 || forcing.lastTime < tMax) {
+			error("Forcing file covers t = " + FormattingHelper.formatDouble(forcing.firstTime) + " ~ "
+				+ FormattingHelper.formatDouble(forcing.lastTime) + " s, the simulation runs for "
+				+ FormattingHelper.formatDouble(tMax) + " s",
+				attribute.modifier, null
+			)
+		}
+	}
+	
+	
+	/*
+	 * Optional grading of the r dimension after n_r: one of r_spacing=log,
+	 * r_ratio=<width ratio of consecutive cells> or one or more r_break=<mass>.
+	 */
+	protected def void validateMeshSpacing(RecordFunction function) {
+		val args = function.arguments.drop(6).toList
+		for(a : args) {
+			if(!(a instanceof RecordFunctionArgument) || !MESH_SPACING_ARGUMENTS.contains((a as RecordFunctionArgument).name)) {
+				error("Optional arguments after n_r are: "+MESH_SPACING_SIGNATURE.substring(2), a, null)
+				return
+			}
+		}
+		val spacingArgs = args.filter(typeof(RecordFunctionArgument)).toList
+		if(spacingArgs.map[ it.name ].toSet.size > 1) {
+			error("Only one kind of spacing may be given for 'r'", spacingArgs.last, null)
+			return
+		}
+		if(spacingArgs.empty) {
+			return
+		}
+		val kind = spacingArgs.head.name
+		if(!'r_break'.equals(kind) && spacingArgs.size > 1) {
+			error("Argument '"+kind+"' must not be repeated", spacingArgs.last, null)
+			return
+		}
+		for(a : spacingArgs) {
+			if(a.argument instanceof RangeExpressionNode) {
+				error("Range expression not allowed here", a.argument, null)
+				return
+			}
+			if(!'r_spacing'.equals(kind)) {
+				a.argument.validateExpr(SpratExprContext.RECORD_FUNCTION_ARGUMENT)
+			}
+		}
+		
+		val rRange = (function.arguments.get(4) as RecordFunctionArgument).argument as RangeExpressionNode
+		val nR = ((function.arguments.get(5) as RecordFunctionArgument).argument as IntegerLiteral).value
+		if(rRange.from == null || rRange.to == null) {
+			return
+		}
+		val rMin = rRange.from.eval
+		val rMax = rRange.to.eval
+		switch(kind) {
+			case 'r_spacing': {
+				val value = spacingArgs.head.argument
+				if(!(value instanceof Identifier) || !(MeshSpacing.UNIFORM.equals((value as Identifier).name) || MeshSpacing.LOGARITHMIC.equals((value as Identifier).name))) {
+					error("Must be one of: "+MeshSpacing.UNIFORM+", "+MeshSpacing.LOGARITHMIC, value, null)
+				} else if(MeshSpacing.LOGARITHMIC.equals((value as Identifier).name) && rMin <= 0.0) {
+					error("Logarithmic spacing requires a positive lower bound of 'r'", rRange, null)
+				}
+			}
+			case 'r_ratio': {
+				val ratio = spacingArgs.head.argument.eval
+				if(ratio <= 0.0) {
+					error("Ratio of consecutive cell widths must be positive", spacingArgs.head.argument, null)
+				} else if(Math.pow(Math.max(ratio, 1.0/ratio), nR - 1) > MAX_MESH_GRADING) {
+					warning("Largest and smallest cell of 'r' differ by a factor of more than "+FormattingHelper.formatDouble(MAX_MESH_GRADING), spacingArgs.head.argument, null)
+				}
+			}
+			case 'r_break': {
+				val breakpoints = spacingArgs.map[ it.argument.eval ].toList
+				if(nR % (breakpoints.size + 1) != 0) {
+					error("n_r must be divisible by the number of segments ("+(breakpoints.size + 1)+")", function.arguments.get(5), null)
+				} else if(!MeshSpacing.isValidBreakpoints(rMin, rMax, nR, breakpoints)) {
+					error("Breakpoints must be strictly increasing and inside of the range of 'r'", spacingArgs.head, null)
+				}
+			}
+		}
+	}
+	
+	
 	@Check
 	def checkRangeExpression(RangeExpressionNode range) {
 		if(range.from == null || range.to == null) {
@@ -495,6 +950,14 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 		expr.ifTrue.validateExpr(context)
 		expr.ifFalse.validateExpr(context)
 	}
+	protected def dispatch void validateExpr(LogicalExpressionNode expr, SpratExprContext context) {
+		if(context != SpratExprContext.VARIABLE_MATH) {
+			error("Boolean operation not allowed here", expr, EcosystemPackage::eINSTANCE.logicalExpressionNode_Ops)
+		}
+		for(operand : expr.operands) {
+			operand.validateExpr(context)
+		}
+	}
 	protected def dispatch void validateExpr(BinaryBooleanExpressionNode expr, SpratExprContext context) {
 		if(context != SpratExprContext.VARIABLE_MATH) {
 			error("Boolean operation not allowed here", expr, EcosystemPackage::eINSTANCE.binaryBooleanExpressionNode_Op)
@@ -512,9 +975,15 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 		}
 		expr.child.validateExpr(context)
 	}
-	protected def dispatch void validateExpr(BinaryArithmeticExpressionNode expr, SpratExprContext context) {
-		expr.left.validateExpr(context)
-		expr.right.validateExpr(context)
+	protected def dispatch void validateExpr(SumExpressionNode expr, SpratExprContext context) {
+		for(operand : expr.operands) {
+			operand.validateExpr(context)
+		}
+	}
+	protected def dispatch void validateExpr(ProductExpressionNode expr, SpratExprContext context) {
+		for(operand : expr.operands) {
+			operand.validateExpr(context)
+		}
 	}
 	protected def dispatch void validateExpr(UnaryBooleanExpressionNode expr, SpratExprContext context) {
 		if(context != SpratExprContext.VARIABLE_MATH) {
@@ -556,17 +1025,21 @@ class EcosystemValidator extends AbstractEcosystemValidator {
 				val sarg = sf.arguments.get(expr.argumentIndex(f))
 				if(!sarg.name.equals(expr.name)) {
 					error("Argument name must be '"+sarg.name+"'", expr, EcosystemPackage::eINSTANCE.recordFunctionArgument_Name)
-					expr.argument.validateExpr(SpratExprContext.RECORD_FUNCTION_ARGUMENT)
+					expr.argument?.validateExpr(SpratExprContext.RECORD_FUNCTION_ARGUMENT)
 				}
+				// unresolved species are reported by the linker
 				if(sarg.units == EcosystemDescription.IDENTIFIER) {
-					if(!(expr.argument instanceof Identifier)
-						|| !(expr.argument as Identifier).name.isValidSpeciesName(expr)
-					) {
-						error("Argument must be a species", expr.argument, null)
+					if(expr.species == null) {
+						error("Argument must be a species", expr.argument?:expr, null)
 					}
+				} else if(expr.argument == null) {
+					error("Argument must not be a species", expr, EcosystemPackage::eINSTANCE.recordFunctionArgument_Species)
 				} else {
 					expr.argument.validateCorrectUnit(sarg.units, sarg.range)
 					expr.argument.validateExpr(SpratExprContext.RECORD_FUNCTION_ARGUMENT)
+					if(expr.isMassRange && expr.rootNode.estimable && expr.resolveMassSlab.empty) {
+						warning("Mass range does not overlap the 'r' dimension of the mesh, the record is always 0", expr.argument, null)
+					}
 				}
 			}
 		} else {
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.validation;
+
+import java.lang.reflect.Method;
+
+import org.eclipse.xtext.validation.AbstractDeclarativeValidator;
+import org.sprat.ecosystem.helper.Instrumentation;
+
+/**
+ * Times each invocation of a check method when instrumentation is enabled,
+ * see {@link Instrumentation}.
+ */
+public class InstrumentedMethodWrapper extends AbstractDeclarativeValidator.MethodWrapper {
+	final String name;
+
+	public InstrumentedMethodWrapper(AbstractDeclarativeValidator instance, Method method) {
+		super(instance, method);
+		this.name = method.getName();
+	}
+
+	@Override
+	public void invoke(AbstractDeclarativeValidator.State state) {
+		if(!Instrumentation.isOn()) {
+			super.invoke(state);
+			return;
+		}
+		final Instrumentation.Timer timer = Instrumentation.start(Instrumentation.CHECK, name);
+		try {
+			super.invoke(state);
+		} finally {
+			timer.stop();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014-2015 Arne Johanson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sprat.ecosystem.validation;
+
+import java.util.HashMap;
+import java.util.List;
+
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.Diagnostic;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.xtext.validation.CheckMode;
+
+/**
+ * Remembers the diagnostics the checks produced for a model element, per
+ * check mode, together with the key of everything the checks depended on.
+ * Elements that are replaced by a partial reparse start without an adapter.
+ */
+public class ValidationCacheAdapter extends AdapterImpl {
+	final HashMap<CheckMode, String> keys = new HashMap<>();
+	final HashMap<CheckMode, List<Diagnostic>> diagnostics = new HashMap<>();
+
+	public static ValidationCacheAdapter get(EObject obj) {
+		for(Object a : obj.eAdapters()) {
+			if(a instanceof ValidationCacheAdapter) {
+				return (ValidationCacheAdapter) a;
+			}
+		}
+		ValidationCacheAdapter adapter = new ValidationCacheAdapter();
+		obj.eAdapters().add(adapter);
+		return adapter;
+	}
+
+	@Override
+	public boolean isAdapterForType(Object type) {
+		return type == ValidationCacheAdapter.class;
+	}
+
+	/*
+	 * Returns null unless the diagnostics were recorded under the same key.
+	 */
+	public List<Diagnostic> lookup(CheckMode mode, String key) {
+		if(key == null || !key.equals(keys.get(mode))) {
+			return null;
+		}
+		return diagnostics.get(mode);
+	}
+
+	public void store(CheckMode mode, String key, List<Diagnostic> diagnostics) {
+		this.keys.put(mode, key);
+		this.diagnostics.put(mode, diagnostics);
+	}
+
+	public void invalidate() {
+		keys.clear();
+		diagnostics.clear();
+	}
+}